@@ -0,0 +1,413 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line batch processor for .worldsmarks and .avatars files. It never touches java.awt
+ * or Swing, so it starts quickly and runs on headless servers.
+ *
+ * Usage: java -cp WorldsEditor.jar BatchTool [options] <file|folder|glob>...
+ */
+public class BatchTool {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: BatchTool [options] <file|folder|glob>...",
+            "  Folders are searched recursively for .worldsmarks/.avatars files;",
+            "  globs such as 'profiles/**/*.avatars' are expanded by the tool.",
+            "Stages, applied in this order:",
+            "  --filter <regex>        keep entries whose name or value contains a match",
+            "  --rewrite <old>=<new>   replace a value prefix (repeatable)",
+            "  --dedupe                drop repeated name+value pairs",
+            "  --sort name|value       sort entries (case-insensitive)",
+            "Output:",
+            "  --out <folder>          write each processed file into <folder>",
+            "  --merge <file>          concatenate all inputs into one file, then dedupe/sort",
+            "  --json                  write JSON exports instead of binary files",
+            "  --threads <n>           worker threads (default: number of cores)",
+            "Checking:",
+            "  --validate              report damage in each file with its byte offset; with --out,",
+            "                          write the entries that could be recovered from damaged files",
+            "Inputs ending in .json are read as JSON exports. Converting between JSON and binary",
+            "with --out and no stages streams entry by entry, in constant memory.",
+            "Without --out or --merge, files are only read and summarized.");
+
+    // One input file and the path it should keep under --out.
+    private static class Input {
+        final File file;
+        final Path relativePath;
+
+        Input(File file, Path relativePath) {
+            this.file = file;
+            this.relativePath = relativePath;
+        }
+    }
+
+    private Pattern filter;
+    private final Map<String, String> rewrites = new LinkedHashMap<>();
+    private boolean dedupe;
+    private String sortKey;
+    private File outFolder;
+    private File mergeFile;
+    private boolean jsonOutput;
+    private boolean validate;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong entriesRead = new AtomicLong();
+    private final AtomicLong entriesWritten = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong damaged = new AtomicLong();
+
+    public static void main(String[] args) {
+        BatchTool tool = new BatchTool();
+        List<String> inputs;
+        try {
+            inputs = tool.parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            boolean ok = tool.run(inputs);
+            System.exit(ok ? 0 : 1);
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private List<String> parseOptions(String[] args) {
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--filter": filter = Pattern.compile(value(args, ++i, arg)); break;
+                case "--rewrite": {
+                    String rule = value(args, ++i, arg);
+                    int eq = rule.indexOf('=');
+                    if (eq <= 0) throw new IllegalArgumentException("--rewrite expects <old>=<new>: " + rule);
+                    rewrites.put(rule.substring(0, eq), rule.substring(eq + 1));
+                    break;
+                }
+                case "--dedupe": dedupe = true; break;
+                case "--sort": {
+                    sortKey = value(args, ++i, arg);
+                    if (!sortKey.equals("name") && !sortKey.equals("value")) {
+                        throw new IllegalArgumentException("--sort expects 'name' or 'value': " + sortKey);
+                    }
+                    break;
+                }
+                case "--out": outFolder = new File(value(args, ++i, arg)); break;
+                case "--merge": mergeFile = new File(value(args, ++i, arg)); break;
+                case "--json": jsonOutput = true; break;
+                case "--validate": validate = true; break;
+                case "--threads": threads = Math.max(1, Integer.parseInt(value(args, ++i, arg))); break;
+                case "--help": throw new IllegalArgumentException("");
+                default:
+                    if (arg.startsWith("--")) throw new IllegalArgumentException("Unknown option: " + arg);
+                    inputs.add(arg);
+            }
+        }
+        if (inputs.isEmpty()) throw new IllegalArgumentException("No input files given.");
+        if (validate && (hasStages() || mergeFile != null)) {
+            throw new IllegalArgumentException("--validate cannot be combined with stages or --merge");
+        }
+        return inputs;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException(option + " needs a value");
+        return args[i];
+    }
+
+    private boolean run(List<String> arguments) throws IOException, InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        List<Input> inputs = expandInputs(arguments);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            if (validate) {
+                // Checked in parallel, reported in input order
+                List<String> reports = pool.submit(() -> inputs.parallelStream().map(this::validateOne).collect(Collectors.toList())).get();
+                for (String report : reports) {
+                    if (report != null) System.out.print(report);
+                }
+                System.out.printf("Checked: %d intact, %d damaged%n", inputs.size() - damaged.get() - failures.get(), damaged.get());
+            } else if (mergeFile != null) {
+                merge(pool, inputs);
+            } else {
+                pool.submit(() -> inputs.parallelStream().forEach(this::processOne)).get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        printSummary(inputs.size(), System.nanoTime() - start);
+        return failures.get() == 0 && damaged.get() == 0;
+    }
+
+    // Checks one file; returns the report to print, or null if the file is intact.
+    private String validateOne(Input input) {
+        try {
+            BookmarkValidator.Report report = BookmarkValidator.check(input.file);
+            bytesRead.addAndGet(report.fileLength);
+            entriesRead.addAndGet(report.data.entries.size());
+            if (report.isIntact()) return null;
+            damaged.incrementAndGet();
+            StringBuilder text = new StringBuilder(input.file.getPath()).append(String.format(": damaged, %,d entries recovered", report.data.entries.size()));
+            if (report.expectedEntries >= 0) text.append(String.format(" of %,d", report.expectedEntries));
+            text.append(System.lineSeparator());
+            for (BookmarkValidator.Problem problem : report.problems) {
+                text.append("  ").append(problem).append(System.lineSeparator());
+            }
+            if (report.omittedProblems > 0) {
+                text.append(String.format("  ... and %,d more problems", report.omittedProblems)).append(System.lineSeparator());
+            }
+            if (outFolder != null && !report.data.entries.isEmpty()) {
+                File destination = outputFile(input);
+                save(report.data, destination);
+                entriesWritten.addAndGet(report.data.entries.size());
+                text.append("  recovered entries written to ").append(destination.getPath()).append(System.lineSeparator());
+            }
+            return text.toString();
+        } catch (IOException | RuntimeException e) {
+            fail(input.file, e);
+            return null;
+        }
+    }
+
+    // Filter, rewrite, dedupe and sort one file, then write it under --out if requested.
+    private void processOne(Input input) {
+        try {
+            boolean jsonInput = isJsonFile(input.file.getName());
+            if (outFolder != null && !hasStages() && jsonInput != jsonOutput) {
+                convertOne(input, jsonInput);
+                return;
+            }
+            Persister.BookmarkData data = load(input.file);
+            List<Persister.BookmarkEntry> entries = sortStage().apply(dedupeStage().apply(perFileStages(data.entries)));
+            entriesWritten.addAndGet(entries.size());
+            if (outFolder != null) {
+                save(data.withEntries(entries), outputFile(input));
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(input.file, e);
+        }
+    }
+
+    // Runs the per-file stages in parallel, then concatenates in input order and dedupes/sorts the whole.
+    private void merge(ForkJoinPool pool, List<Input> inputs) throws InterruptedException, ExecutionException, IOException {
+        List<Persister.BookmarkData> loaded = pool.submit(() -> inputs.parallelStream().map(input -> {
+            try {
+                Persister.BookmarkData data = load(input.file);
+                return data.withEntries(perFileStages(data.entries));
+            } catch (IOException | RuntimeException e) {
+                fail(input.file, e);
+                return null;
+            }
+        }).collect(Collectors.toList())).get();
+
+        Persister.BookmarkData first = null;
+        List<Persister.BookmarkEntry> merged = new ArrayList<>();
+        for (Persister.BookmarkData data : loaded) {
+            if (data == null) continue;
+            if (first == null) {
+                first = data;
+            } else if (first.type != null && !first.type.equals(data.type)) {
+                System.err.println("Warning: merging '" + data.type + "' entries into a '" + first.type + "' file");
+            }
+            merged.addAll(data.entries);
+        }
+        if (first == null) throw new IOException("No input could be read.");
+        merged = sortStage().apply(dedupeStage().apply(merged));
+        entriesWritten.addAndGet(merged.size());
+        Persister.BookmarkData output = new Persister.BookmarkData(first.type, first.version, merged);
+        output.extraInt = first.extraInt;
+        output.objectID = first.objectID;
+        save(output, mergeFile);
+    }
+
+    // Plain binary <-> JSON conversion, streamed entry by entry.
+    private void convertOne(Input input, boolean jsonInput) throws IOException {
+        File destination = outputFile(input);
+        int count = jsonInput
+                ? Persister.importFromJson(input.file, destination)
+                : Persister.exportToJson(input.file, destination);
+        bytesRead.addAndGet(input.file.length());
+        entriesRead.addAndGet(count);
+        entriesWritten.addAndGet(count);
+    }
+
+    // Mirrors the input's relative path under --out, adding or dropping ".json" when the format changes.
+    private File outputFile(Input input) throws IOException {
+        String name = input.relativePath.toString();
+        if (jsonOutput && !isJsonFile(name)) {
+            name += ".json";
+        } else if (!jsonOutput && isJsonFile(name)) {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        File destination = outFolder.toPath().resolve(name).toFile();
+        Files.createDirectories(destination.getAbsoluteFile().getParentFile().toPath());
+        return destination;
+    }
+
+    private void save(Persister.BookmarkData data, File destination) throws IOException {
+        if (!jsonOutput) {
+            Persister.saveToFile(destination, data, null);
+            return;
+        }
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(destination), StandardCharsets.UTF_8))) {
+            Persister.exportToJson(data, out);
+        }
+    }
+
+    private Persister.BookmarkData load(File file) throws IOException {
+        Persister.BookmarkData data = isJsonFile(file.getName())
+                ? Persister.loadFromJson(file)
+                : Persister.loadFromFileChannel(file);
+        bytesRead.addAndGet(file.length());
+        entriesRead.addAndGet(data.entries.size());
+        return data;
+    }
+
+    private void fail(File file, Exception e) {
+        failures.incrementAndGet();
+        System.err.println(file + ": " + e);
+    }
+
+    // --- Stages ---
+
+    private boolean hasStages() {
+        return filter != null || !rewrites.isEmpty() || dedupe || sortKey != null;
+    }
+
+    private List<Persister.BookmarkEntry> perFileStages(List<Persister.BookmarkEntry> entries) {
+        Stream<Persister.BookmarkEntry> stream = entries.stream();
+        if (filter != null) {
+            stream = stream.filter(e -> filter.matcher(e.name).find() || filter.matcher(e.value).find());
+        }
+        if (!rewrites.isEmpty()) {
+            stream = stream.map(this::rewrite);
+        }
+        return stream.collect(Collectors.toList());
+    }
+
+    private Persister.BookmarkEntry rewrite(Persister.BookmarkEntry entry) {
+        for (Map.Entry<String, String> rule : rewrites.entrySet()) {
+            if (entry.value.startsWith(rule.getKey())) {
+                return new Persister.BookmarkEntry(entry.name, rule.getValue() + entry.value.substring(rule.getKey().length()));
+            }
+        }
+        return entry;
+    }
+
+    private UnaryOperator<List<Persister.BookmarkEntry>> dedupeStage() {
+        if (!dedupe) return UnaryOperator.identity();
+        return entries -> {
+            Set<String> seen = new HashSet<>();
+            List<Persister.BookmarkEntry> kept = new ArrayList<>();
+            for (Persister.BookmarkEntry e : entries) {
+                if (seen.add(e.name + '\n' + e.value)) kept.add(e);
+            }
+            return kept;
+        };
+    }
+
+    private UnaryOperator<List<Persister.BookmarkEntry>> sortStage() {
+        if (sortKey == null) return UnaryOperator.identity();
+        Comparator<Persister.BookmarkEntry> order = sortKey.equals("name")
+                ? Comparator.comparing((Persister.BookmarkEntry e) -> e.name, String.CASE_INSENSITIVE_ORDER)
+                : Comparator.comparing((Persister.BookmarkEntry e) -> e.value, String.CASE_INSENSITIVE_ORDER);
+        return entries -> {
+            List<Persister.BookmarkEntry> sorted = new ArrayList<>(entries);
+            sorted.sort(order);
+            return sorted;
+        };
+    }
+
+    // --- Inputs ---
+
+    private static List<Input> expandInputs(List<String> arguments) throws IOException {
+        List<Input> inputs = new ArrayList<>();
+        for (String argument : arguments) {
+            if (argument.matches(".*[*?\\[{].*")) {
+                expandGlob(argument, inputs);
+                continue;
+            }
+            File file = new File(argument);
+            if (file.isDirectory()) {
+                Path root = file.toPath();
+                try (Stream<Path> paths = Files.walk(root)) {
+                    paths.filter(Files::isRegularFile)
+                         .filter(path -> isBookmarkFile(path.getFileName().toString()))
+                         .sorted()
+                         .forEach(path -> inputs.add(new Input(path.toFile(), root.relativize(path))));
+                }
+            } else {
+                inputs.add(new Input(file, Paths.get(file.getName())));
+            }
+        }
+        return inputs;
+    }
+
+    // Walks from the longest glob-free directory prefix and keeps the paths matching the pattern.
+    private static void expandGlob(String pattern, List<Input> inputs) throws IOException {
+        String normalized = pattern.replace(File.separatorChar, '/');
+        int firstWildcard = normalized.length();
+        for (char c : new char[]{'*', '?', '[', '{'}) {
+            int i = normalized.indexOf(c);
+            if (i >= 0) firstWildcard = Math.min(firstWildcard, i);
+        }
+        int slash = normalized.lastIndexOf('/', firstWildcard);
+        Path root = Paths.get(slash < 0 ? "." : (slash == 0 ? "/" : normalized.substring(0, slash)));
+        String relativePattern = slash < 0 ? normalized : normalized.substring(slash + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+        if (!Files.isDirectory(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(Files::isRegularFile)
+                 .filter(path -> matcher.matches(root.relativize(path)))
+                 .sorted()
+                 .forEach(path -> inputs.add(new Input(path.toFile(), root.relativize(path))));
+        }
+    }
+
+    private static boolean isBookmarkFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".worldsmarks") || lower.endsWith(".avatars");
+    }
+
+    private static boolean isJsonFile(String name) {
+        return name.toLowerCase().endsWith(".json");
+    }
+
+    private void printSummary(int fileCount, long elapsedNanos) {
+        double seconds = Math.max(elapsedNanos, 1) / 1e9;
+        System.out.printf("Files: %d (%d failed), threads: %d%n", fileCount, failures.get(), threads);
+        System.out.printf("Entries: %d read, %d written%n", entriesRead.get(), entriesWritten.get());
+        System.out.printf("Elapsed: %.2f s, %.0f entries/s, %.1f MB/s%n",
+                seconds, entriesRead.get() / seconds, bytesRead.get() / 1e6 / seconds);
+    }
+}
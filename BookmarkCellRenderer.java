@@ -0,0 +1,135 @@
+import javax.swing.JComponent;
+import javax.swing.JTable;
+import javax.swing.UIManager;
+import javax.swing.table.TableCellRenderer;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.util.Map;
+
+/**
+ * Paints a cell's text straight onto the table instead of through a JLabel, so a cell costs no
+ * layout, no property-change events and no allocation beyond the value the model returns. Text
+ * that does not fit is cut at the last whole character and ends in "...". Meant for tables with
+ * one fixed row height, see {@link #rowHeight}, which find the rows to paint by division.
+ */
+public class BookmarkCellRenderer extends JComponent implements TableCellRenderer {
+
+    private static final String ELLIPSIS = "...";
+    private static final int PADDING = 3;
+
+    private final Map<?, ?> textHints = (Map<?, ?>) Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+    private final Color focusColor;
+    private String text = "";
+    private Font font;
+    private Color foreground;
+    private Color background;
+    private boolean focused;
+    private char[] chars = new char[256]; // Reused when text must be cut
+
+    public BookmarkCellRenderer() {
+        Color focus = UIManager.getColor("nimbusFocus");
+        focusColor = focus != null ? focus : Color.LIGHT_GRAY;
+        setOpaque(true);
+    }
+
+    /** Returns a row height that fits the table's font, for {@link JTable#setRowHeight(int)}. */
+    public static int rowHeight(JTable table) {
+        return table.getFontMetrics(table.getFont()).getHeight() + 4;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+        // Only fields are set here; JComponent's setters would fire events for every cell
+        text = value == null ? "" : value.toString();
+        font = table.getFont();
+        foreground = isSelected ? table.getSelectionForeground() : table.getForeground();
+        background = isSelected ? table.getSelectionBackground() : background(table, row, column);
+        focused = hasFocus;
+        return this;
+    }
+
+    /** Returns the background of an unselected cell; subclasses may override it to tint rows. */
+    protected Color background(JTable table, int row, int column) {
+        return table.getBackground();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int width = getWidth();
+        int height = getHeight();
+        g.setColor(background);
+        g.fillRect(0, 0, width, height);
+
+        Graphics2D g2 = (Graphics2D) g;
+        if (textHints != null) {
+            g2.addRenderingHints(textHints);
+        } else {
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        }
+        g.setFont(font);
+        g.setColor(foreground);
+        FontMetrics metrics = g.getFontMetrics();
+        int baseline = (height - metrics.getHeight()) / 2 + metrics.getAscent();
+        int room = width - 2 * PADDING;
+        if (metrics.stringWidth(text) <= room) {
+            g.drawString(text, PADDING, baseline);
+        } else {
+            int length = text.length();
+            if (chars.length < length) chars = new char[Math.max(length, 2 * chars.length)];
+            text.getChars(0, length, chars, 0);
+            room -= metrics.stringWidth(ELLIPSIS);
+            int fit = 0;
+            int used = 0;
+            while (fit < length && used + metrics.charWidth(chars[fit]) <= room) used += metrics.charWidth(chars[fit++]);
+            if (fit > 0 && Character.isHighSurrogate(chars[fit - 1])) used -= metrics.charWidth(chars[--fit]);
+            g.drawChars(chars, 0, fit, PADDING, baseline);
+            g.drawString(ELLIPSIS, PADDING + used, baseline);
+        }
+        if (focused) {
+            g.setColor(focusColor);
+            g.drawRect(0, 0, width - 1, height - 1);
+        }
+    }
+
+    // The renderer is only ever painted through a CellRendererPane, so, as in
+    // DefaultTableCellRenderer, there is nothing to validate or repaint.
+
+    @Override
+    public void invalidate() {
+    }
+
+    @Override
+    public void validate() {
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void repaint(Rectangle r) {
+    }
+
+    @Override
+    public void repaint() {
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    }
+
+    @Override
+    public void firePropertyChange(String propertyName, boolean oldValue, boolean newValue) {
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the entries of a .worldsmarks or .avatars file one at a time, so a file can be
+ * scanned in constant memory. The header is decoded when the reader is opened.
+ *
+ * Read errors while iterating are rethrown as UncheckedIOException.
+ */
+public class BookmarkReader implements Iterator<Persister.BookmarkEntry>, Closeable {
+
+    private final ChannelReader reader;
+    private final long fileLength;
+    private final long lastModified;
+    private final String type;
+    private final int version;
+    private final int entryCount;
+    private final int extraInt;
+    private final int objectID;
+    private int nextIndex;
+
+    /**
+     * Opens a file and decodes its header.
+     * @param sourceFile The binary file to read.
+     * @throws IOException If the header is invalid or a read error occurs.
+     */
+    public BookmarkReader(File sourceFile) throws IOException {
+        this.lastModified = sourceFile.lastModified();
+        FileChannel channel = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ);
+        this.reader = new ChannelReader(channel);
+        try {
+            this.fileLength = channel.size();
+            String magicHeader = reader.readString();
+            if (!"PERSISTER Worlds, Inc.".equals(magicHeader)) {
+                throw new IOException("Invalid format: header=" + magicHeader);
+            }
+            this.version = reader.readInt();
+            this.entryCount = reader.readInt();
+            this.extraInt = reader.readInt();
+            this.objectID = reader.readInt();
+            this.type = reader.readString();
+            if (entryCount == 0) readFooter(); // Otherwise read after the last entry
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    public String getType() { return type; }
+    public int getVersion() { return version; }
+    public int getEntryCount() { return entryCount; }
+    public int getExtraInt() { return extraInt; }
+    public int getObjectID() { return objectID; }
+
+    /** Returns the file offset of the next byte to be decoded, for progress reporting. */
+    public long getPosition() { return reader.position(); }
+
+    /** Returns the total length of the file in bytes. */
+    public long getFileLength() { return fileLength; }
+
+    /** Returns the file's modification time as seen when the reader was opened. */
+    public long getLastModified() { return lastModified; }
+
+    @Override
+    public boolean hasNext() {
+        return nextIndex < entryCount;
+    }
+
+    @Override
+    public Persister.BookmarkEntry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        try {
+            return readEntry();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Same as {@link #next()}, but reports read errors as checked exceptions.
+     * @return The next entry, or null once all entries have been read.
+     * @throws IOException If a record is malformed or a read error occurs.
+     */
+    public Persister.BookmarkEntry readEntry() throws IOException {
+        if (!hasNext()) return null;
+        long recordOffset = reader.position();
+        reader.readInt(); // Record marker
+        if (nextIndex > 0) reader.readInt(); // Object ID
+        String name = reader.readString();
+        String value = reader.readString();
+        Persister.BookmarkEntry entry = new Persister.BookmarkEntry(name, value);
+        entry.bindRecord(recordOffset, (int) (reader.position() - recordOffset), nextIndex);
+        nextIndex++;
+        if (nextIndex == entryCount) readFooter();
+        return entry;
+    }
+
+    /**
+     * Reads the next entry into a packed list without decoding its strings.
+     * @return False once all entries have been read.
+     * @throws IOException If a record is malformed or a read error occurs.
+     */
+    public boolean readEntryInto(PackedEntryList target) throws IOException {
+        if (!hasNext()) return false;
+        long recordOffset = reader.position();
+        reader.readInt(); // Record marker
+        if (nextIndex > 0) reader.readInt(); // Object ID
+        int nameId = target.addString(reader.readStringBytes());
+        int valueId = target.addString(reader.readStringBytes());
+        target.addRecord(nameId, valueId, recordOffset, (int) (reader.position() - recordOffset), nextIndex);
+        nextIndex++;
+        if (nextIndex == entryCount) readFooter();
+        return true;
+    }
+
+    private void readFooter() throws IOException {
+        String footer = reader.readString();
+        if (!"END PERSISTER".equals(footer)) {
+            throw new IOException("Invalid format: footer=" + footer);
+        }
+    }
+
+    /** Returns a sequential, sized stream over the remaining entries. Closing the stream closes the reader. */
+    public Stream<Persister.BookmarkEntry> stream() {
+        Spliterator<Persister.BookmarkEntry> spliterator = Spliterators.spliterator(
+                this, entryCount - nextIndex, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,440 @@
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.event.TableModelEvent;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Sorts and filters one tab's rows by the lowercased cells its {@link SearchIndex} already keeps,
+ * so comparing or matching a row never decodes a cell or lowercases a string. Model changes are
+ * folded into the current order instead of sorting again: changed and inserted rows are placed by
+ * binary search, removed rows are dropped and the rest renumbered. A filter that extends the
+ * previous one only re-checks the rows still shown.
+ *
+ * Clicking a column header cycles it through ascending, descending and model order. With no sort
+ * and no filter the sorter is the identity, and model changes cost nothing.
+ */
+public class BookmarkRowSorter extends RowSorter<BookmarkTableModel> {
+
+    private static final Metrics.Timer FILTER_TIMER = Metrics.timer("table.filter");
+    private static final Metrics.Timer SORT_TIMER = Metrics.timer("table.sort");
+
+    private final BookmarkTableModel model;
+    private final Supplier<SearchIndex> indexSupplier;
+    private SearchIndex index; // Requested on the first sort or filter
+    private int modelRowCount;
+    private SortKey sortKey; // Null while rows are in model order
+    private boolean descending;
+    private String filter = ""; // Lowercased; empty shows every row
+    private int[] order; // Every model row in sort order, or null while unsorted
+    private int[] shown; // Model rows passing the filter in view order, or null while unfiltered
+    private int[] modelToView; // Built on demand
+    private TableModelEvent currentEvent; // The event JTable is passing on, to recognize the model's own kinds
+
+    public BookmarkRowSorter(BookmarkTableModel model, Supplier<SearchIndex> indexSupplier) {
+        this.model = model;
+        this.indexSupplier = indexSupplier;
+        this.modelRowCount = model.getRowCount();
+        // Added after the table's listener, so it runs first and the table's calls below can see the event
+        model.addTableModelListener(e -> currentEvent = e);
+    }
+
+    @Override
+    public BookmarkTableModel getModel() {
+        return model;
+    }
+
+    /** Returns true if rows are sorted or filtered, i.e. not shown in model order. */
+    public boolean isTransformed() {
+        return sortKey != null || shown != null;
+    }
+
+    // --- Filtering ---
+
+    /** Shows only rows whose name or value contains {@code text}, ignoring case; empty shows all. */
+    public void setFilterText(String text) {
+        String lower = text.toLowerCase();
+        if (lower.equals(filter)) return;
+        long start = System.nanoTime();
+        int[] previous = viewToModel();
+        boolean narrowing = shown != null && lower.contains(filter);
+        filter = lower;
+        if (lower.isEmpty()) {
+            shown = null;
+        } else if (narrowing) {
+            shown = keepMatching(shown); // Rows hidden before cannot match a longer query
+        } else {
+            shown = matchingRows();
+        }
+        modelToView = null;
+        fireRowSorterChanged(previous);
+        FILTER_TIMER.record(start, 0, previous == null ? modelRowCount : previous.length);
+    }
+
+    public String getFilterText() {
+        return filter;
+    }
+
+    // --- RowSorter ---
+
+    @Override
+    public void toggleSortOrder(int column) {
+        SortOrder next = SortOrder.ASCENDING;
+        if (sortKey != null && sortKey.getColumn() == column) {
+            next = descending ? SortOrder.UNSORTED : SortOrder.DESCENDING;
+        }
+        setSortKeys(next == SortOrder.UNSORTED ? null : Collections.singletonList(new SortKey(column, next)));
+    }
+
+    /** Sorts by the first key only; an empty list or UNSORTED restores model order. */
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        SortKey key = keys == null || keys.isEmpty() || keys.get(0).getSortOrder() == SortOrder.UNSORTED ? null : keys.get(0);
+        if (key == null ? sortKey == null : key.equals(sortKey)) return;
+        long start = System.nanoTime();
+        int[] previous = viewToModel();
+        boolean reversed = key != null && sortKey != null && key.getColumn() == sortKey.getColumn();
+        sortKey = key;
+        descending = key != null && key.getSortOrder() == SortOrder.DESCENDING;
+        fireSortOrderChanged();
+        if (reversed) {
+            // Descending is the exact reverse of ascending, ties included
+            order = reverse(order);
+            if (shown != null) shown = reverse(shown);
+        } else {
+            order = key == null ? null : sortRows(allRows());
+            if (shown != null) shown = sortRows(shown);
+        }
+        modelToView = null;
+        fireRowSorterChanged(previous);
+        SORT_TIMER.record(start, 0, modelRowCount);
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKey == null ? Collections.<SortKey>emptyList() : Collections.singletonList(sortKey);
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (index < 0 || index >= getViewRowCount()) throw new IndexOutOfBoundsException("Invalid index " + index);
+        return shown != null ? shown[index] : order != null ? order[index] : index;
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (index < 0 || index >= modelRowCount) throw new IndexOutOfBoundsException("Invalid index " + index);
+        if (!isTransformed()) return index;
+        if (modelToView == null) {
+            int[] rows = viewToModel();
+            modelToView = new int[modelRowCount];
+            Arrays.fill(modelToView, -1);
+            for (int i = 0; i < rows.length; i++) modelToView[rows[i]] = i;
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return shown != null ? shown.length : modelRowCount;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return modelRowCount;
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        allRowsChanged();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        TableModelEvent event = currentEvent;
+        int oldCount = modelRowCount;
+        modelRowCount = model.getRowCount();
+        if (!isTransformed()) return;
+        int[] previous = viewToModel();
+        if (event instanceof BookmarkTableModel.RowsRemovedEvent) {
+            int[] removed = ((BookmarkTableModel.RowsRemovedEvent) event).getRemovedRows();
+            if (oldCount - removed.length == modelRowCount) {
+                if (order != null) order = withoutRows(order, removed);
+                if (shown != null) shown = withoutRows(shown, removed);
+                changed(previous);
+                return;
+            }
+        }
+        if (event instanceof BookmarkTableModel.RowsReplacedEvent) {
+            // Kept rows keep their relative order; the inserted ones are merged in
+            BookmarkTableModel.RowsReplacedEvent replaced = (BookmarkTableModel.RowsReplacedEvent) event;
+            int[] inserted = replaced.getInsertedRows();
+            if (order != null) order = merge(renumbered(order, replaced), sortRows(inserted));
+            if (shown != null) shown = merge(renumbered(shown, replaced), sortRows(keepMatching(inserted)));
+            changed(previous);
+            return;
+        }
+        if (sortKey != null) order = sortRows(allRows());
+        if (shown != null) shown = matchingRows();
+        changed(previous);
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        modelRowCount = model.getRowCount();
+        if (!isTransformed()) return;
+        int[] previous = viewToModel();
+        int count = endRow - firstRow + 1;
+        int[] added = range(firstRow, endRow);
+        if (order != null) order = merge(shifted(order, firstRow, count), sortRows(added));
+        if (shown != null) shown = merge(shifted(shown, firstRow, count), sortRows(keepMatching(added)));
+        changed(previous);
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        modelRowCount = model.getRowCount();
+        if (!isTransformed()) return;
+        int[] previous = viewToModel();
+        int[] removed = range(firstRow, endRow);
+        if (order != null) order = withoutRows(order, removed);
+        if (shown != null) shown = withoutRows(shown, removed);
+        changed(previous);
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        TableModelEvent event = currentEvent;
+        if (!isTransformed()) return;
+        if (event instanceof BookmarkTableModel.RowsReorderedEvent && event.getFirstRow() == firstRow && event.getLastRow() == endRow) {
+            reorderRows(firstRow, ((BookmarkTableModel.RowsReorderedEvent) event).getOrder());
+            return;
+        }
+        int[] previous = viewToModel();
+        int[] updated = range(firstRow, endRow);
+        // Take the rows out and merge them back in where their new text belongs
+        if (order != null) order = merge(withoutRange(order, firstRow, endRow), sortRows(updated));
+        if (shown != null) shown = merge(withoutRange(shown, firstRow, endRow), sortRows(keepMatching(updated)));
+        changed(previous);
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        // A column that is neither sorted on nor filtered cannot move or hide a row
+        if (shown == null && (sortKey == null || sortKey.getColumn() != column)) return;
+        rowsUpdated(firstRow, endRow);
+    }
+
+    // --- Internals ---
+
+    // Rows only changed places within [from, from + order.length), so no row's text changed. A
+    // sorted view keeps every row in its slot; a filtered one re-sorts the slots of the span.
+    private void reorderRows(int from, int[] permutation) {
+        int[] newPosition = new int[permutation.length];
+        for (int i = 0; i < permutation.length; i++) newPosition[permutation[i]] = from + i;
+        int to = from + permutation.length;
+        if (order != null) renumber(order, from, to, newPosition);
+        if (shown != null) {
+            renumber(shown, from, to, newPosition);
+            if (sortKey == null) {
+                int[] before = withoutRange(shown, from, to - 1);
+                int start = Arrays.binarySearch(before, from);
+                start = start >= 0 ? start : -start - 1;
+                Arrays.sort(shown, start, start + shown.length - before.length);
+            }
+        }
+        modelToView = null;
+    }
+
+    private static void renumber(int[] rows, int from, int to, int[] newPosition) {
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] >= from && rows[i] < to) rows[i] = newPosition[rows[i] - from];
+        }
+    }
+
+    private void changed(int[] previous) {
+        modelToView = null;
+        fireRowSorterChanged(previous);
+    }
+
+    private SearchIndex index() {
+        if (index == null) index = indexSupplier.get();
+        return index;
+    }
+
+    // The current view as model rows, or null while it is the identity.
+    private int[] viewToModel() {
+        return shown != null ? shown : order;
+    }
+
+    private int[] allRows() {
+        return range(0, modelRowCount - 1);
+    }
+
+    // Rows passing the filter, in view order. The keys are read in model order, which is far
+    // kinder to the cache than following the sort order through the index.
+    private int[] matchingRows() {
+        int[] matching = keepMatching(allRows());
+        if (order == null) return matching;
+        boolean[] matches = new boolean[modelRowCount];
+        for (int row : matching) matches[row] = true;
+        int[] result = new int[matching.length];
+        int count = 0;
+        for (int row : order) {
+            if (matches[row]) result[count++] = row;
+        }
+        return result;
+    }
+
+    private int[] keepMatching(int[] rows) {
+        if (filter.isEmpty()) return rows;
+        SearchIndex searchIndex = index();
+        int[] kept = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            SearchIndex.Row keys = searchIndex.rowAt(row);
+            if (keys.name.contains(filter) || keys.value.contains(filter)) kept[count++] = row;
+        }
+        return count == kept.length ? kept : Arrays.copyOf(kept, count);
+    }
+
+    // View order: the sort column's lowercased text, then model row, so the order is total and
+    // descending is its exact reverse.
+    private int compare(String keyA, int a, String keyB, int b) {
+        int c = keyA == keyB ? 0 : keyA.compareTo(keyB);
+        if (c == 0) c = Integer.compare(a, b);
+        return descending ? -c : c;
+    }
+
+    private String key(int row) {
+        SearchIndex.Row keys = index().rowAt(row);
+        return sortKey.getColumn() == 0 ? keys.name : keys.value;
+    }
+
+    // Sorts a copy of the given model rows into view order. The keys are gathered once into an
+    // array that is sorted along with the rows, so comparisons never go back to the index.
+    private int[] sortRows(int[] rows) {
+        int[] sorted = rows.clone();
+        if (sortKey == null) {
+            Arrays.sort(sorted);
+            return sorted;
+        }
+        String[] keys = new String[rows.length];
+        for (int i = 0; i < rows.length; i++) keys[i] = key(rows[i]);
+        mergeSort(sorted, keys, rows.clone(), keys.clone(), 0, rows.length);
+        return sorted;
+    }
+
+    // Sorts rows[from, to) and their keys, using the second pair of arrays (a copy of the same range) as scratch.
+    private void mergeSort(int[] rows, String[] keys, int[] rowsCopy, String[] keysCopy, int from, int to) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                String key = keys[i];
+                int j = i - 1;
+                while (j >= from && compare(keys[j], rows[j], key, row) > 0) {
+                    rows[j + 1] = rows[j];
+                    keys[j + 1] = keys[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+                keys[j + 1] = key;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(rowsCopy, keysCopy, rows, keys, from, mid);
+        mergeSort(rowsCopy, keysCopy, rows, keys, mid, to);
+        for (int i = from, l = from, r = mid; i < to; i++) {
+            if (r >= to || (l < mid && compare(keysCopy[l], rowsCopy[l], keysCopy[r], rowsCopy[r]) <= 0)) {
+                rows[i] = rowsCopy[l];
+                keys[i] = keysCopy[l++];
+            } else {
+                rows[i] = rowsCopy[r];
+                keys[i] = keysCopy[r++];
+            }
+        }
+    }
+
+    // Places the rows of b, already in view order, into a by binary search, copying the runs of a between them.
+    private int[] merge(int[] a, int[] b) {
+        if (b.length == 0) return a;
+        int[] merged = new int[a.length + b.length];
+        int from = 0;
+        int out = 0;
+        for (int row : b) {
+            int at = insertionPoint(a, from, row);
+            System.arraycopy(a, from, merged, out, at - from);
+            out += at - from;
+            merged[out++] = row;
+            from = at;
+        }
+        System.arraycopy(a, from, merged, out, a.length - from);
+        return merged;
+    }
+
+    // First position in a[from..] whose row comes after the given one.
+    private int insertionPoint(int[] a, int from, int row) {
+        String key = sortKey == null ? null : key(row);
+        int lo = from, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = sortKey == null ? Integer.compare(a[mid], row) : compare(key(a[mid]), a[mid], key, row);
+            if (c <= 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int[] reverse(int[] rows) {
+        int[] reversed = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) reversed[i] = rows[rows.length - 1 - i];
+        return reversed;
+    }
+
+    // Renumbers rows for a block of count rows inserted at first.
+    private static int[] shifted(int[] rows, int first, int count) {
+        int[] result = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) result[i] = rows[i] >= first ? rows[i] + count : rows[i];
+        return result;
+    }
+
+    // Drops rows in [first, last] without renumbering the others.
+    private static int[] withoutRange(int[] rows, int first, int last) {
+        int[] result = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            if (row < first || row > last) result[count++] = row;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Renumbers rows for a block replacement, dropping the rows it removed.
+    private static int[] renumbered(int[] rows, BookmarkTableModel.RowsReplacedEvent event) {
+        int[] result = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            int moved = event.newIndexOf(row);
+            if (moved != -1) result[count++] = moved;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Drops the removed rows (sorted ascending, numbered before the removal) and renumbers the rest.
+    private static int[] withoutRows(int[] rows, int[] removed) {
+        int[] result = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            int pos = Arrays.binarySearch(removed, row);
+            if (pos < 0) result[count++] = row + pos + 1; // pos = -(removed rows before it) - 1
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] range(int first, int last) {
+        int[] rows = new int[Math.max(0, last - first + 1)];
+        for (int i = 0; i < rows.length; i++) rows[i] = first + i;
+        return rows;
+    }
+}
@@ -0,0 +1,663 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.UndoableEditListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.UndoableEdit;
+import javax.swing.undo.UndoableEditSupport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table model that views the entry list of a BookmarkData directly instead of copying it
+ * into rows. Edits go straight into the list, so saving needs no model-to-list copy, and
+ * structural changes fire a single event for the whole affected range.
+ */
+public class BookmarkTableModel extends AbstractTableModel {
+
+    /**
+     * Fired when rows that are not contiguous are removed at once. To ordinary listeners it is a
+     * plain "all data changed" event; listeners that know it can drop just the listed rows.
+     */
+    public static class RowsRemovedEvent extends TableModelEvent {
+        private final int[] removedRows;
+
+        RowsRemovedEvent(TableModel source, int[] removedRows) {
+            super(source);
+            this.removedRows = removedRows;
+        }
+
+        /** Returns the removed model rows, sorted ascending, as numbered before the removal. */
+        public int[] getRemovedRows() {
+            return removedRows.clone();
+        }
+    }
+
+    /**
+     * Fired when rows only changed places. To ordinary listeners it is an update of the affected
+     * range; listeners that know it can apply the permutation instead of re-reading the rows.
+     */
+    public static class RowsReorderedEvent extends TableModelEvent {
+        private final int[] order;
+
+        RowsReorderedEvent(TableModel source, int firstRow, int[] order) {
+            super(source, firstRow, firstRow + order.length - 1);
+            this.order = order;
+        }
+
+        /** Row {@code getFirstRow() + i} now holds the row previously at {@code getFirstRow() + order[i]}. */
+        public int[] getOrder() {
+            return order.clone();
+        }
+    }
+
+    /**
+     * Fired when several blocks of rows are replaced at once, e.g. by a merge. To ordinary
+     * listeners it is a plain "all data changed" event; listeners that know it can keep the rows
+     * outside the blocks and read only the inserted ones.
+     */
+    public static class RowsReplacedEvent extends TableModelEvent {
+        private final int[] starts, removedCounts, insertedCounts;
+        private final int[] shifts; // shifts[i]: rows gained by the blocks before block i
+
+        RowsReplacedEvent(TableModel source, int[] starts, int[] removedCounts, int[] insertedCounts) {
+            super(source);
+            this.starts = starts;
+            this.removedCounts = removedCounts;
+            this.insertedCounts = insertedCounts;
+            shifts = new int[starts.length + 1];
+            for (int i = 0; i < starts.length; i++) shifts[i + 1] = shifts[i] + insertedCounts[i] - removedCounts[i];
+        }
+
+        /** Returns the first row of each block, ascending, as numbered before the change. */
+        public int[] getStarts() {
+            return starts.clone();
+        }
+
+        /** Returns how many rows each block removed. */
+        public int[] getRemovedCounts() {
+            return removedCounts.clone();
+        }
+
+        /** Returns how many rows each block inserted in place of the removed ones. */
+        public int[] getInsertedCounts() {
+            return insertedCounts.clone();
+        }
+
+        /** Returns the inserted rows, sorted ascending, as numbered after the change. */
+        public int[] getInsertedRows() {
+            int[] rows = new int[shifts[starts.length] + totalRemoved()];
+            int count = 0;
+            for (int i = 0; i < starts.length; i++) {
+                for (int j = 0; j < insertedCounts[i]; j++) rows[count++] = starts[i] + shifts[i] + j;
+            }
+            return rows;
+        }
+
+        /** Returns where a row numbered before the change is now, or -1 if it was removed. */
+        public int newIndexOf(int row) {
+            int lo = 0, hi = starts.length; // Find the last block starting at or before row
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] <= row) lo = mid + 1; else hi = mid;
+            }
+            if (lo == 0) return row;
+            int block = lo - 1;
+            if (row < starts[block] + removedCounts[block]) return -1;
+            return row + shifts[block + 1];
+        }
+
+        private int totalRemoved() {
+            int total = 0;
+            for (int count : removedCounts) total += count;
+            return total;
+        }
+    }
+
+    private static final String[] COLUMN_NAMES = {"Name", "Value"};
+
+    private final Persister.BookmarkData data;
+    private final UndoableEditSupport undoSupport = new UndoableEditSupport(this);
+    private boolean replaying; // True while an edit is undone or redone, so it is not recorded again
+
+    public BookmarkTableModel(Persister.BookmarkData data) {
+        this.data = data;
+    }
+
+    public Persister.BookmarkData getData() {
+        return data;
+    }
+
+    public List<Persister.BookmarkEntry> getEntries() {
+        return data.entries;
+    }
+
+    @Override
+    public int getRowCount() {
+        return data.entries.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return true;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        List<Persister.BookmarkEntry> entries = data.entries;
+        if (entries instanceof PackedEntryList) {
+            // Decode only the requested cell
+            PackedEntryList packed = (PackedEntryList) entries;
+            return column == 0 ? packed.getName(row) : packed.getValue(row);
+        }
+        Persister.BookmarkEntry entry = entries.get(row);
+        return column == 0 ? entry.name : entry.value;
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        String text = value == null ? "" : value.toString();
+        Persister.BookmarkEntry current = data.entries.get(row);
+        if (text.equals(column == 0 ? current.name : current.value)) return;
+        Persister.BookmarkEntry updated = column == 0
+                ? new Persister.BookmarkEntry(text, current.value)
+                : new Persister.BookmarkEntry(current.name, text);
+        replaceEntry(row, column, updated);
+        record(new CellEdit(row, column, new Persister.BookmarkEntry(current.name, current.value),
+                new Persister.BookmarkEntry(updated.name, updated.value)));
+    }
+
+    /** Inserts entries starting at {@code row}, firing one insert event for the whole block. */
+    public void insertRows(int row, List<Persister.BookmarkEntry> entries) {
+        if (entries.isEmpty()) return;
+        addEntries(row, entries);
+        record(new InsertEdit(row, unbound(entries)));
+    }
+
+    /** Appends a packed batch (e.g. from a background load) by copying its bytes, firing one insert event. Not undoable. */
+    public void appendRows(PackedEntryList batch) {
+        if (batch.isEmpty()) return;
+        int firstRow = data.entries.size();
+        if (data.entries instanceof PackedEntryList) {
+            ((PackedEntryList) data.entries).appendAll(batch);
+        } else {
+            data.entries.addAll(batch);
+        }
+        fireTableRowsInserted(firstRow, firstRow + batch.size() - 1);
+    }
+
+    /**
+     * Replaces the {@code count} rows at {@code row} with the given entries. Rows that line up are
+     * updated in place and only the difference in length is inserted or removed, so listeners see
+     * at most two events. Undoes as one step.
+     */
+    public void replaceRows(int row, int count, List<Persister.BookmarkEntry> entries) {
+        int updated = Math.min(count, entries.size());
+        beginUpdate();
+        try {
+            if (updated > 0) {
+                List<Persister.BookmarkEntry> before = copyEntries(range(row, updated));
+                List<Persister.BookmarkEntry> after = entries.subList(0, updated);
+                setEntries(row, after);
+                record(new UpdateEdit(row, before, unbound(after)));
+            }
+            if (entries.size() > count) {
+                insertRows(row + updated, new ArrayList<>(entries.subList(updated, entries.size())));
+            } else if (count > updated) {
+                removeRows(row + updated, row + count - 1);
+            }
+        } finally {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Applies a diff in one pass: for each hunk, ascending, this model's rows oldStart..oldEnd
+     * (numbered as before the call) are replaced by the rows newStart..newEnd of {@code source}.
+     * Listeners get one {@link RowsReplacedEvent} however many hunks there are, and the change
+     * undoes as one step.
+     */
+    public void applyHunks(List<EntryDiff.Hunk> hunks, List<Persister.BookmarkEntry> source) {
+        if (hunks.isEmpty()) return;
+        int[] starts = new int[hunks.size()];
+        int[] counts = new int[hunks.size()];
+        int[] lengths = new int[hunks.size()];
+        int removedTotal = 0, addedTotal = 0;
+        for (int i = 0; i < starts.length; i++) {
+            EntryDiff.Hunk hunk = hunks.get(i);
+            starts[i] = hunk.oldStart;
+            counts[i] = hunk.oldCount;
+            lengths[i] = hunk.newCount;
+            removedTotal += hunk.oldCount;
+            addedTotal += hunk.newCount;
+        }
+        int[] removedRows = new int[removedTotal];
+        int[] addedRows = new int[addedTotal];
+        int r = 0, a = 0;
+        for (EntryDiff.Hunk hunk : hunks) {
+            for (int i = hunk.oldStart; i < hunk.oldEnd(); i++) removedRows[r++] = i;
+            for (int i = hunk.newStart; i < hunk.newEnd(); i++) addedRows[a++] = i;
+        }
+        List<Persister.BookmarkEntry> removed = copyEntries(removedRows);
+        List<Persister.BookmarkEntry> added;
+        if (source instanceof PackedEntryList) {
+            PackedEntryList packed = ((PackedEntryList) source).extract(addedRows);
+            packed.unbindRecords(); // Its records belong to the other file
+            added = packed;
+        } else {
+            added = new ArrayList<>(addedRows.length);
+            for (int row : addedRows) {
+                Persister.BookmarkEntry entry = source.get(row);
+                added.add(new Persister.BookmarkEntry(entry.name, entry.value));
+            }
+        }
+        splice(starts, counts, added, lengths);
+        record(new SpliceEdit(starts, counts, removed, lengths, unshared(added)));
+    }
+
+    /** Removes the rows firstRow..lastRow (inclusive), firing one delete event. */
+    public void removeRows(int firstRow, int lastRow) {
+        int[] rows = new int[lastRow - firstRow + 1];
+        for (int i = 0; i < rows.length; i++) rows[i] = firstRow + i;
+        removeRows(rows);
+    }
+
+    /**
+     * Removes the given model rows in one pass. A contiguous selection fires one delete event;
+     * any other fires a single RowsRemovedEvent.
+     */
+    public void removeRows(int[] rows) {
+        int[] sorted = distinctSorted(rows);
+        if (sorted.length == 0) return;
+        record(new RemoveEdit(sorted, copyEntries(sorted)));
+        deleteEntries(sorted);
+    }
+
+    /**
+     * Moves each contiguous run of the given rows one position up (direction -1) or down (+1),
+     * swapping it with the neighbouring row, and fires one RowsReorderedEvent.
+     * @return The new model rows of the moved entries, or null if a run is already at the edge.
+     */
+    public int[] shiftRows(int[] rows, int direction) {
+        int[] sorted = distinctSorted(rows);
+        if (sorted.length == 0) return null;
+        int lo = sorted[0] + Math.min(direction, 0);
+        int hi = sorted[sorted.length - 1] + Math.max(direction, 0);
+        if (lo < 0 || hi >= getRowCount()) return null;
+        int[] order = identity(hi - lo + 1);
+        if (direction < 0) {
+            for (int row : sorted) swap(order, row - lo - 1, row - lo);
+        } else {
+            for (int i = sorted.length - 1; i >= 0; i--) swap(order, sorted[i] - lo, sorted[i] - lo + 1);
+        }
+        reorder(lo, order);
+        for (int i = 0; i < sorted.length; i++) sorted[i] += direction;
+        return sorted;
+    }
+
+    /**
+     * Moves the given rows, in their current order, so they form one block that starts where
+     * {@code dropRow} was (0..getRowCount()), firing one RowsReorderedEvent over the affected range.
+     * @return The model row where the moved block now starts.
+     */
+    public int moveRowsTo(int[] rows, int dropRow) {
+        int[] sorted = distinctSorted(rows);
+        if (sorted.length == 0) return dropRow;
+        int lo = Math.min(sorted[0], dropRow);
+        int hi = Math.max(sorted[sorted.length - 1], dropRow - 1);
+        int[] order = new int[hi - lo + 1];
+        int count = 0;
+        int next = 0;
+        // Unselected rows before the drop point, then the block, then the remaining unselected rows
+        for (int row = lo; row < dropRow; row++) {
+            if (next < sorted.length && sorted[next] == row) next++;
+            else order[count++] = row - lo;
+        }
+        int blockStart = lo + count;
+        for (int row : sorted) order[count++] = row - lo;
+        for (int row = dropRow; row <= hi; row++) {
+            if (Arrays.binarySearch(sorted, row) < 0) order[count++] = row - lo;
+        }
+        reorder(lo, order);
+        return blockStart;
+    }
+
+    /**
+     * Moves the rows start..end (inclusive) so that the row at {@code start} ends up at {@code to},
+     * like DefaultTableModel.moveRow, firing one RowsReorderedEvent over the affected range.
+     */
+    public void moveRows(int start, int end, int to) {
+        int count = end - start + 1;
+        int lo = Math.min(start, to);
+        int[] order = new int[Math.max(end, to + count - 1) - lo + 1];
+        // A rotation of the range: it starts with the block when moving up, after it when moving down
+        int firstSource = to < start ? start - lo : count;
+        for (int i = 0; i < order.length; i++) order[i] = (i + firstSource) % order.length;
+        reorder(lo, order);
+    }
+
+    // --- Undo/Redo ---
+
+    /** Registers a listener (usually an UndoManager) for the edits made through this model. */
+    public void addUndoableEditListener(UndoableEditListener listener) {
+        undoSupport.addUndoableEditListener(listener);
+    }
+
+    public void removeUndoableEditListener(UndoableEditListener listener) {
+        undoSupport.removeUndoableEditListener(listener);
+    }
+
+    /** Makes the edits until the matching {@link #endUpdate()} undo and redo as one step. */
+    public void beginUpdate() {
+        undoSupport.beginUpdate();
+    }
+
+    public void endUpdate() {
+        undoSupport.endUpdate();
+    }
+
+    private void record(UndoableEdit edit) {
+        if (!replaying) undoSupport.postEdit(edit);
+    }
+
+    // Runs an undo or redo step without recording it again.
+    private void replay(Runnable step) {
+        replaying = true;
+        try {
+            step.run();
+        } finally {
+            replaying = false;
+        }
+    }
+
+    // Edits keep only what they need to replay: the touched entries or a permutation, never a full copy.
+    private class CellEdit extends AbstractUndoableEdit {
+        private final int row, column;
+        private final Persister.BookmarkEntry before, after;
+
+        CellEdit(int row, int column, Persister.BookmarkEntry before, Persister.BookmarkEntry after) {
+            this.row = row;
+            this.column = column;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override public String getPresentationName() { return "Edit Cell"; }
+        @Override public void undo() { super.undo(); replay(() -> replaceEntry(row, column, unshared(before))); }
+        @Override public void redo() { super.redo(); replay(() -> replaceEntry(row, column, unshared(after))); }
+    }
+
+    private class UpdateEdit extends AbstractUndoableEdit {
+        private final int row;
+        private final List<Persister.BookmarkEntry> before, after;
+
+        UpdateEdit(int row, List<Persister.BookmarkEntry> before, List<Persister.BookmarkEntry> after) {
+            this.row = row;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override public String getPresentationName() { return "Replace Rows"; }
+        @Override public void undo() { super.undo(); replay(() -> setEntries(row, unshared(before))); }
+        @Override public void redo() { super.redo(); replay(() -> setEntries(row, unshared(after))); }
+    }
+
+    private class InsertEdit extends AbstractUndoableEdit {
+        private final int row;
+        private final List<Persister.BookmarkEntry> entries;
+
+        InsertEdit(int row, List<Persister.BookmarkEntry> entries) {
+            this.row = row;
+            this.entries = entries;
+        }
+
+        @Override public String getPresentationName() { return "Insert Rows"; }
+        @Override public void undo() { super.undo(); replay(() -> deleteEntries(range(row, entries.size()))); }
+        @Override public void redo() { super.redo(); replay(() -> addEntries(row, unshared(entries))); }
+    }
+
+    private class RemoveEdit extends AbstractUndoableEdit {
+        private final int[] rows;
+        private final List<Persister.BookmarkEntry> entries;
+
+        RemoveEdit(int[] rows, List<Persister.BookmarkEntry> entries) {
+            this.rows = rows;
+            this.entries = entries;
+        }
+
+        @Override public String getPresentationName() { return "Delete Rows"; }
+        @Override public void undo() { super.undo(); replay(() -> restoreEntries(rows, unshared(entries))); }
+        @Override public void redo() { super.redo(); replay(() -> deleteEntries(rows)); }
+    }
+
+    private class ReorderEdit extends AbstractUndoableEdit {
+        private final int from;
+        private final int[] order;
+
+        ReorderEdit(int from, int[] order) {
+            this.from = from;
+            this.order = order;
+        }
+
+        @Override public String getPresentationName() { return "Move Rows"; }
+        @Override public void undo() { super.undo(); replay(() -> reorder(from, invert(order))); }
+        @Override public void redo() { super.redo(); replay(() -> reorder(from, order)); }
+    }
+
+    private class SpliceEdit extends AbstractUndoableEdit {
+        private final int[] starts, counts, lengths;
+        private final List<Persister.BookmarkEntry> removed, added;
+
+        SpliceEdit(int[] starts, int[] counts, List<Persister.BookmarkEntry> removed, int[] lengths, List<Persister.BookmarkEntry> added) {
+            this.starts = starts;
+            this.counts = counts;
+            this.removed = removed;
+            this.lengths = lengths;
+            this.added = added;
+        }
+
+        @Override public String getPresentationName() { return "Merge"; }
+        @Override public void undo() { super.undo(); replay(() -> splice(startsAfter(), lengths, unshared(removed), counts)); }
+        @Override public void redo() { super.redo(); replay(() -> splice(starts, counts, unshared(added), lengths)); }
+
+        // Where the blocks start once applied
+        private int[] startsAfter() {
+            int[] after = new int[starts.length];
+            int shift = 0;
+            for (int i = 0; i < starts.length; i++) {
+                after[i] = starts[i] + shift;
+                shift += lengths[i] - counts[i];
+            }
+            return after;
+        }
+    }
+
+    // --- Internals ---
+
+    private void replaceEntry(int row, int column, Persister.BookmarkEntry entry) {
+        data.entries.set(row, entry);
+        fireTableCellUpdated(row, column);
+    }
+
+    private void setEntries(int row, List<Persister.BookmarkEntry> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            data.entries.set(row + i, entries.get(i));
+        }
+        fireTableRowsUpdated(row, row + entries.size() - 1);
+    }
+
+    private void addEntries(int row, List<Persister.BookmarkEntry> entries) {
+        data.entries.addAll(row, entries);
+        fireTableRowsInserted(row, row + entries.size() - 1);
+    }
+
+    // Replaces counts[i] rows at starts[i] with the next lengths[i] replacements, for every i, and fires one event.
+    private void splice(int[] starts, int[] counts, List<Persister.BookmarkEntry> replacements, int[] lengths) {
+        List<Persister.BookmarkEntry> entries = data.entries;
+        if (entries instanceof PackedEntryList) {
+            ((PackedEntryList) entries).replaceRanges(starts, counts, replacements, lengths);
+        } else {
+            List<Persister.BookmarkEntry> result = new ArrayList<>(entries.size());
+            int from = 0;
+            int next = 0;
+            for (int i = 0; i < starts.length; i++) {
+                result.addAll(entries.subList(from, starts[i]));
+                result.addAll(replacements.subList(next, next + lengths[i]));
+                next += lengths[i];
+                from = starts[i] + counts[i];
+            }
+            result.addAll(entries.subList(from, entries.size()));
+            entries.clear();
+            entries.addAll(result);
+        }
+        fireTableChanged(new RowsReplacedEvent(this, starts, counts, lengths));
+    }
+
+    // Removes the rows at the given sorted positions and fires one event.
+    private void deleteEntries(int[] sorted) {
+        int first = sorted[0];
+        int last = sorted[sorted.length - 1];
+        List<Persister.BookmarkEntry> entries = data.entries;
+        if (last - first + 1 == sorted.length) {
+            entries.subList(first, last + 1).clear();
+            fireTableRowsDeleted(first, last);
+            return;
+        }
+        if (entries instanceof PackedEntryList) {
+            ((PackedEntryList) entries).removeIndexes(sorted);
+        } else {
+            int kept = first;
+            int next = 0;
+            for (int i = first; i < entries.size(); i++) {
+                if (next < sorted.length && sorted[next] == i) {
+                    next++;
+                } else {
+                    entries.set(kept++, entries.get(i));
+                }
+            }
+            entries.subList(kept, entries.size()).clear();
+        }
+        fireTableChanged(new RowsRemovedEvent(this, sorted));
+    }
+
+    // Puts removed entries back at their original sorted positions, one insert event per contiguous run.
+    private void restoreEntries(int[] sorted, List<Persister.BookmarkEntry> removed) {
+        int runStart = 0;
+        for (int i = 1; i <= sorted.length; i++) {
+            if (i == sorted.length || sorted[i] != sorted[i - 1] + 1) {
+                addEntries(sorted[runStart], removed.subList(runStart, i));
+                runStart = i;
+            }
+        }
+    }
+
+    // Copies the entries about to be removed, unbound; a packed list copies just their bytes.
+    private List<Persister.BookmarkEntry> copyEntries(int[] sorted) {
+        List<Persister.BookmarkEntry> entries = data.entries;
+        if (entries instanceof PackedEntryList) {
+            PackedEntryList copy = ((PackedEntryList) entries).extract(sorted);
+            copy.unbindRecords();
+            return copy;
+        }
+        List<Persister.BookmarkEntry> copy = new ArrayList<>(sorted.length);
+        for (int row : sorted) {
+            Persister.BookmarkEntry entry = entries.get(row);
+            copy.add(new Persister.BookmarkEntry(entry.name, entry.value));
+        }
+        return copy;
+    }
+
+    // Entries an edit puts in the list must not be the ones it keeps: a list other than a packed one
+    // holds the objects themselves, and saving binds those in place. A packed list copies them anyway.
+    private List<Persister.BookmarkEntry> unshared(List<Persister.BookmarkEntry> entries) {
+        return data.entries instanceof PackedEntryList ? entries : unbound(entries);
+    }
+
+    private Persister.BookmarkEntry unshared(Persister.BookmarkEntry entry) {
+        return data.entries instanceof PackedEntryList ? entry : new Persister.BookmarkEntry(entry.name, entry.value);
+    }
+
+    // Copies entries for an undo edit without their record bindings. Saving rebinds the list to the
+    // new file and leaves the edits as they are, so an entry put back by undo or redo must not claim
+    // a record offset of the file as it was before.
+    private static List<Persister.BookmarkEntry> unbound(List<Persister.BookmarkEntry> entries) {
+        if (entries instanceof PackedEntryList) {
+            PackedEntryList copy = ((PackedEntryList) entries).snapshot();
+            copy.unbindRecords();
+            return copy;
+        }
+        List<Persister.BookmarkEntry> copy = new ArrayList<>(entries.size());
+        for (Persister.BookmarkEntry entry : entries) copy.add(new Persister.BookmarkEntry(entry.name, entry.value));
+        return copy;
+    }
+
+    private void reorder(int from, int[] order) {
+        if (Arrays.equals(order, identity(order.length))) return;
+        permute(from, order);
+        fireTableChanged(new RowsReorderedEvent(this, from, order));
+        record(new ReorderEdit(from, order));
+    }
+
+    // Position from + i receives the entry previously at from + order[i].
+    private void permute(int from, int[] order) {
+        List<Persister.BookmarkEntry> entries = data.entries;
+        if (entries instanceof PackedEntryList) {
+            ((PackedEntryList) entries).permute(from, order);
+            return;
+        }
+        List<Persister.BookmarkEntry> span = new ArrayList<>(entries.subList(from, from + order.length));
+        for (int i = 0; i < order.length; i++) {
+            entries.set(from + i, span.get(order[i]));
+        }
+    }
+
+    private static int[] distinctSorted(int[] rows) {
+        int[] sorted = rows.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (count == 0 || sorted[count - 1] != sorted[i]) sorted[count++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    private static int[] range(int first, int count) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) rows[i] = first + i;
+        return rows;
+    }
+
+    private static int[] invert(int[] order) {
+        int[] inverse = new int[order.length];
+        for (int i = 0; i < order.length; i++) inverse[order[i]] = i;
+        return inverse;
+    }
+
+    private static int[] identity(int length) {
+        int[] order = new int[length];
+        for (int i = 0; i < length; i++) order[i] = i;
+        return order;
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int t = array[i];
+        array[i] = array[j];
+        array[j] = t;
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks a .worldsmarks or .avatars file against the layout Persister writes, and recovers what it
+ * can from a damaged one. Where the loaders give up at the first bad record, this reports the damage
+ * with its byte offset, skips ahead to the next place a record plausibly starts and carries on, so a
+ * file with a few bad bytes or a missing tail only loses the entries those bytes held.
+ *
+ * The layout checked: the header string, version, entry count, extra int, object ID and type
+ * string; for each entry i a marker int (1 for the first entry, 460+i after that), the header's
+ * object ID (not for the first entry), and the name and value strings; then the "END PERSISTER"
+ * footer, with nothing after it.
+ */
+public final class BookmarkValidator {
+
+    private static final Metrics.Timer VALIDATE_TIMER = Metrics.timer("validate");
+    private static final String MAGIC = "PERSISTER Worlds, Inc.";
+    private static final String FOOTER = "END PERSISTER";
+    private static final int MAX_PROBLEMS = 1000; // Per file; a shredded file would report every record
+    private static final int MIN_RECORD_SIZE = 10; // Marker, object ID and two empty strings
+
+    /** One place where the file differs from what Persister writes. */
+    public static final class Problem {
+        public final long offset; // Where the damage starts
+        public final long length; // Bytes that had to be skipped, 0 if none were
+        public final String message;
+
+        Problem(long offset, long length, String message) {
+            this.offset = offset;
+            this.length = length;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            String text = String.format("offset %,d (0x%X): %s", offset, offset, message);
+            return length > 0 ? text + String.format(" [%,d bytes skipped]", length) : text;
+        }
+    }
+
+    /** What {@link #check} found in one file. */
+    public static final class Report {
+        public final File file;
+        public final long fileLength;
+        /** The entries that could be read, in file order, with the header's metadata if it was readable. */
+        public final Persister.BookmarkData data;
+        public final int expectedEntries; // As the header states, -1 if it is unreadable
+        public final List<Problem> problems;
+        public final int omittedProblems; // Found beyond MAX_PROBLEMS and not listed
+
+        Report(File file, long fileLength, Persister.BookmarkData data, int expectedEntries, List<Problem> problems, int omittedProblems) {
+            this.file = file;
+            this.fileLength = fileLength;
+            this.data = data;
+            this.expectedEntries = expectedEntries;
+            this.problems = problems;
+            this.omittedProblems = omittedProblems;
+        }
+
+        /** Returns whether the file is exactly as Persister would have written it. */
+        public boolean isIntact() {
+            return problems.isEmpty();
+        }
+    }
+
+    private final File file;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private final char[] scratch = new char[65535];
+    private final List<Problem> problems = new ArrayList<>();
+    private int omittedProblems;
+    private boolean objectIDKnown;
+    private int objectID;
+    private int expectedCount = -1; // As the header states
+    private int headerCountOffset;
+    private int bodyStart; // Offset of the first record
+
+    private BookmarkValidator(File file, byte[] bytes) {
+        this.file = file;
+        this.bytes = bytes;
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Reads a whole file and checks it. Damage inside the file is reported, not thrown.
+     * @param file The file to check.
+     * @return The problems found and the entries that could be recovered.
+     * @throws IOException If the file cannot be read at all.
+     */
+    public static Report check(File file) throws IOException {
+        long start = System.nanoTime();
+        if (file.length() > Integer.MAX_VALUE - 8) throw new IOException("File is too large to check: " + file.length() + " bytes");
+        BookmarkValidator validator = new BookmarkValidator(file, Files.readAllBytes(file.toPath()));
+        Report report = validator.run();
+        VALIDATE_TIMER.record(start, report.fileLength, report.data.entries.size());
+        return report;
+    }
+
+    private Report run() {
+        int n = bytes.length;
+        Persister.BookmarkData data = readHeader();
+        int expected = expectedCount;
+        List<Persister.BookmarkEntry> entries = data.entries;
+        int p = bodyStart;
+        int index = 0; // The entry expected next
+        while (true) {
+            if (p == n) {
+                problem(n, 0, "File ends before the footer; it was probably cut short");
+                break;
+            }
+            if (footerAt(p)) {
+                p += FOOTER.length() + 3;
+                if (p < n) problem(p, n - p, "Unexpected bytes after the footer");
+                break;
+            }
+            int end = readRecord(p, index, entries);
+            if (end != -1) {
+                p = end;
+                index++;
+                continue;
+            }
+            int next = resync(p + 1, index);
+            if (next == -1) {
+                problem(p, n - p, "Entry " + (index + 1) + " and everything after it are unreadable; the file may have been cut short");
+                break;
+            }
+            if (footerAt(next)) {
+                String lost = expected > index ? entryRange(index, expected - index) : "any entries before the footer";
+                problem(p, next - p, "Entry " + (index + 1) + " is damaged; " + lost + " lost");
+            } else {
+                int resumed = recordIndex(next);
+                problem(p, next - p, resumed == index
+                        ? "Unexpected bytes before entry " + (index + 1)
+                        : "Entry " + (index + 1) + " is damaged; " + entryRange(index, resumed - index) + " lost, reading on from entry " + (resumed + 1));
+                index = resumed;
+            }
+            p = next;
+        }
+        if (expected >= 0 && entries.size() != expected) {
+            problem(headerCountOffset, 0, String.format("The header says %,d entries; %,d were recovered", expected, entries.size()));
+        }
+        return new Report(file, n, data, expected, Collections.unmodifiableList(problems), omittedProblems);
+    }
+
+    // --- Header ---
+
+    // Reads the header into a BookmarkData for the recovered entries. An unreadable header is
+    // reported and replaced by the defaults for the file's extension; records are then searched
+    // for from the start of the file.
+    private Persister.BookmarkData readHeader() {
+        boolean avatars = file.getName().toLowerCase().endsWith(".avatars");
+        Persister.BookmarkData data = new Persister.BookmarkData(
+                avatars ? "NET.worlds.console.AvatarMenuItem" : "NET.worlds.console.BookmarkMenuItem", 7, new ArrayList<>());
+        int magicEnd = stringEnd(0);
+        if (magicEnd == -1 || !MAGIC.equals(readString(0))) {
+            problem(0, 0, "The header does not start with \"" + MAGIC + "\"");
+            return data;
+        }
+        int typeStart = magicEnd + 16;
+        int typeEnd = stringEnd(typeStart);
+        if (typeEnd == -1) {
+            problem(magicEnd, 0, bytes.length < typeStart ? "File ends inside the header" : "The header's type string is unreadable");
+            return data;
+        }
+        data.version = buffer.getInt(magicEnd);
+        headerCountOffset = magicEnd + 4;
+        expectedCount = buffer.getInt(headerCountOffset);
+        data.extraInt = buffer.getInt(magicEnd + 8);
+        data.objectID = objectID = buffer.getInt(magicEnd + 12);
+        objectIDKnown = true;
+        String type = readString(typeStart);
+        if (!type.isEmpty()) data.type = type;
+        data.hasHeaderMetadata = true;
+        if (expectedCount < 0) {
+            problem(headerCountOffset, 0, "The header's entry count is negative: " + expectedCount);
+            expectedCount = -1;
+        }
+        bodyStart = typeEnd;
+        return data;
+    }
+
+    // --- Records ---
+
+    // Reads the record at p, expected to be entry 'index', into 'entries'. Returns its end, or -1
+    // if it is not a record. A wrong marker or object ID is reported but tolerated as long as the
+    // other one is right and both strings are valid.
+    private int readRecord(int p, int index, List<Persister.BookmarkEntry> entries) {
+        if (index == 0) {
+            if (p + 4 > bytes.length || buffer.getInt(p) != 1) return -1;
+            int nameEnd = stringEnd(p + 4);
+            int valueEnd = nameEnd == -1 ? -1 : stringEnd(nameEnd);
+            if (valueEnd == -1) return -1;
+            entries.add(new Persister.BookmarkEntry(readString(p + 4), readString(nameEnd)));
+            return valueEnd;
+        }
+        if (p + 8 > bytes.length) return -1;
+        int marker = buffer.getInt(p);
+        int recordObjectID = buffer.getInt(p + 4);
+        boolean markerMatches = marker == 460 + index;
+        boolean objectIDMatches = !objectIDKnown || recordObjectID == objectID;
+        if (!markerMatches && !objectIDMatches) return -1;
+        int nameEnd = stringEnd(p + 8);
+        int valueEnd = nameEnd == -1 ? -1 : stringEnd(nameEnd);
+        if (valueEnd == -1) return -1;
+        if (!markerMatches) problem(p, 0, "Entry " + (index + 1) + " has marker " + marker + ", expected " + (460 + index));
+        if (!objectIDMatches) problem(p + 4, 0, "Entry " + (index + 1) + " has object ID " + recordObjectID + ", the header has " + objectID);
+        if (!objectIDKnown) {
+            objectID = recordObjectID;
+            objectIDKnown = true;
+        }
+        entries.add(new Persister.BookmarkEntry(readString(p + 8), readString(nameEnd)));
+        return valueEnd;
+    }
+
+    // Returns the first offset at or after 'from' where the footer or a plausible record of entry
+    // 'index' or later starts, or -1. A record is plausible when its marker fits an entry not yet
+    // read, its object ID matches, its strings are valid and what follows it is the next record's
+    // marker, the footer or the end of the file.
+    private int resync(int from, int index) {
+        int n = bytes.length;
+        int maxIndex = index + (n - from) / MIN_RECORD_SIZE + 1;
+        for (int q = from; q + 4 <= n; q++) {
+            int marker = buffer.getInt(q);
+            if (marker == 1 && index == 0) {
+                int nameEnd = stringEnd(q + 4);
+                int end = nameEnd == -1 ? -1 : stringEnd(nameEnd);
+                if (end != -1 && followsRecord(end, 1)) return q;
+            } else if (marker >= 460 + Math.max(index, 1) && marker <= 460 + maxIndex && q + 8 <= n) {
+                int recordObjectID = buffer.getInt(q + 4);
+                if (objectIDKnown && recordObjectID != objectID) continue;
+                int nameEnd = stringEnd(q + 8);
+                int end = nameEnd == -1 ? -1 : stringEnd(nameEnd);
+                if (end == -1 || !followsRecord(end, marker - 460 + 1)) continue;
+                // Without a header, the next record has to agree on the object ID
+                if (!objectIDKnown && !footerAt(end) && end + 8 <= n && buffer.getInt(end + 4) != recordObjectID) continue;
+                return q;
+            } else if (bytes[q] == 0 && footerAt(q)) {
+                return q;
+            }
+        }
+        return -1;
+    }
+
+    // Whether what starts at 'p' can follow a record: entry 'nextIndex', the footer or the end of the file.
+    private boolean followsRecord(int p, int nextIndex) {
+        if (p == bytes.length || footerAt(p)) return true;
+        return p + 4 <= bytes.length && buffer.getInt(p) == 460 + nextIndex;
+    }
+
+    // The entry index a plausible record found by resync() stands for.
+    private int recordIndex(int p) {
+        int marker = buffer.getInt(p);
+        return marker == 1 ? 0 : marker - 460;
+    }
+
+    private boolean footerAt(int p) {
+        int end = p + 3 + FOOTER.length();
+        if (end > bytes.length || bytes[p] != 0 || (buffer.getShort(p + 1) & 0xFFFF) != FOOTER.length()) return false;
+        for (int i = 0; i < FOOTER.length(); i++) {
+            if (bytes[p + 3 + i] != FOOTER.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // --- Strings ---
+
+    // Returns the end of the valid flagged string at p (see Persister.readString), or -1.
+    private int stringEnd(int p) {
+        if (p >= bytes.length) return -1;
+        if (bytes[p] == 1) return p + 1;
+        if (bytes[p] != 0 || p + 3 > bytes.length) return -1;
+        int length = buffer.getShort(p + 1) & 0xFFFF;
+        int end = p + 3 + length;
+        if (end > bytes.length) return -1;
+        buffer.position(p + 3);
+        try {
+            ModifiedUtf8.decodeChars(buffer, length, scratch);
+        } catch (UTFDataFormatException e) {
+            return -1;
+        }
+        return end;
+    }
+
+    // Decodes a string that stringEnd() accepted.
+    private String readString(int p) {
+        if (bytes[p] == 1) return "";
+        buffer.position(p + 3);
+        try {
+            return ModifiedUtf8.decode(buffer, buffer.getShort(p + 1) & 0xFFFF, scratch);
+        } catch (UTFDataFormatException e) {
+            throw new IllegalStateException(e); // Validated by stringEnd()
+        }
+    }
+
+    // --- Reporting ---
+
+    private void problem(long offset, long length, String message) {
+        if (problems.size() == MAX_PROBLEMS) {
+            omittedProblems++;
+            return;
+        }
+        problems.add(new Problem(offset, length, message));
+    }
+
+    private static String entryRange(int start, int count) {
+        return count == 1 ? "entry " + (start + 1) : String.format("entries %,d-%,d", start + 1, start + count);
+    }
+}
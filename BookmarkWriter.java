@@ -0,0 +1,91 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a .worldsmarks or .avatars file one entry at a time, so it can be produced in
+ * constant memory. The header's entry count is written as 0 and patched on close.
+ */
+public class BookmarkWriter implements Closeable {
+
+    private final ChannelWriter writer;
+    private final int objectID;
+    private final long entryCountOffset;
+    private int entryCount;
+    private boolean closed;
+
+    /**
+     * Creates/overwrites a file with the default header metadata.
+     * @param destinationFile The file to be created/overwritten.
+     * @param type The type identifier, e.g. "NET.worlds.console.BookmarkMenuItem".
+     * @param version The file version.
+     * @throws IOException If a write error occurs.
+     */
+    public BookmarkWriter(File destinationFile, String type, int version) throws IOException {
+        this(destinationFile, type, version, 459, 8782);
+    }
+
+    /**
+     * Creates/overwrites a file with explicit header metadata.
+     * @param destinationFile The file to be created/overwritten.
+     * @param type The type identifier.
+     * @param version The file version.
+     * @param extraInt The header's 'extra' value.
+     * @param objectID The object ID repeated in every entry record after the first.
+     * @throws IOException If a write error occurs.
+     */
+    public BookmarkWriter(File destinationFile, String type, int version, int extraInt, int objectID) throws IOException {
+        this.writer = new ChannelWriter(FileChannel.open(destinationFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        this.objectID = objectID;
+        try {
+            writer.writeString("PERSISTER Worlds, Inc.");
+            writer.writeInt(version);
+            this.entryCountOffset = writer.position();
+            writer.writeInt(0); // Patched in close()
+            writer.writeInt(extraInt);
+            writer.writeInt(objectID);
+            writer.writeString(type == null ? "" : type);
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends one entry record.
+     * @throws IOException If a write error occurs.
+     */
+    public void write(Persister.BookmarkEntry entry) throws IOException {
+        if (closed) throw new IOException("Writer is closed");
+        if (entryCount == 0) {
+            writer.writeInt(1);
+        } else {
+            writer.writeInt(460 + entryCount);
+            writer.writeInt(objectID);
+        }
+        writer.writeString(entry.name);
+        writer.writeString(entry.value);
+        entryCount++;
+    }
+
+    /** Returns the number of entries written so far. */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /** Writes the footer, patches the header's entry count and closes the file. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writer.writeString("END PERSISTER");
+            writer.writeIntAt(entryCountOffset, entryCount);
+        } finally {
+            writer.close();
+        }
+    }
+}
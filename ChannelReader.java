@@ -0,0 +1,93 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the Persister primitives (int, boolean, flagged UTF string) from a FileChannel
+ * through one large direct buffer, refilling it in big chunks instead of per field.
+ *
+ * The file is deliberately not memory-mapped: on Windows a mapped region keeps the file
+ * locked until the buffer is garbage collected, which would break saving over a file
+ * that was just opened.
+ */
+final class ChannelReader implements Closeable {
+
+    static final int BUFFER_SIZE = 256 * 1024;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final char[] scratch = new char[65535];
+    private long bufferStart; // File offset of buffer index 0
+
+    ChannelReader(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.flip(); // Start empty
+    }
+
+    /** Returns the file offset of the next byte to be decoded. */
+    long position() {
+        return bufferStart + buffer.position();
+    }
+
+    int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    boolean readBoolean() throws IOException {
+        require(1);
+        return buffer.get() != 0;
+    }
+
+    String readUTF() throws IOException {
+        require(2);
+        int length = buffer.getShort() & 0xFFFF;
+        require(length);
+        return ModifiedUtf8.decode(buffer, length, scratch);
+    }
+
+    // Same layout as Persister.readString: an "is empty" flag, then the UTF payload if not empty.
+    String readString() throws IOException {
+        return readBoolean() ? "" : readUTF();
+    }
+
+    /**
+     * Reads a flagged string but returns its validated modified UTF-8 bytes instead of decoding them.
+     * The returned view is only valid until the next read call.
+     */
+    ByteBuffer readStringBytes() throws IOException {
+        if (readBoolean()) return EMPTY;
+        require(2);
+        int length = buffer.getShort() & 0xFFFF;
+        require(length);
+        ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        ModifiedUtf8.decodeChars(buffer, length, scratch); // Validates and advances past the bytes
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Makes sure at least n bytes are buffered, compacting and refilling from the channel.
+    private void require(int n) throws IOException {
+        if (buffer.remaining() >= n) return;
+        bufferStart += buffer.position();
+        buffer.compact();
+        try {
+            while (buffer.position() < n) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of file at offset " + (bufferStart + buffer.position()));
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes the Persister primitives to a FileChannel through one large direct buffer.
+ * Counterpart of ChannelReader; the output is byte-identical to DataOutputStream.
+ */
+final class ChannelWriter implements Closeable {
+
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long bufferStart; // File offset of buffer index 0
+
+    ChannelWriter(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.bufferStart = channel.position();
+    }
+
+    /** Returns the file offset the next byte will be written to. */
+    long position() {
+        return bufferStart + buffer.position();
+    }
+
+    void writeInt(int v) throws IOException {
+        ensure(4);
+        buffer.putInt(v);
+    }
+
+    void writeBoolean(boolean v) throws IOException {
+        ensure(1);
+        buffer.put((byte) (v ? 1 : 0));
+    }
+
+    void writeUTF(String s) throws IOException {
+        int utfLength = ModifiedUtf8.encodedLength(s);
+        ensure(2 + Math.min(utfLength, 65535));
+        ModifiedUtf8.encode(s, utfLength, buffer);
+    }
+
+    // Same layout as Persister.writeString: an "is empty" flag, then the UTF payload if not empty.
+    void writeString(String s) throws IOException {
+        if (s == null) s = "";
+        if (!s.isEmpty()) {
+            writeBoolean(false);
+            writeUTF(s);
+        } else {
+            writeBoolean(true);
+        }
+    }
+
+    /** Overwrites an int that was already written, e.g. a count that is only known at the end. */
+    void writeIntAt(long offset, int v) throws IOException {
+        flush();
+        ByteBuffer patch = ByteBuffer.allocate(4);
+        patch.putInt(v).flip();
+        while (patch.hasRemaining()) {
+            channel.write(patch, offset + patch.position());
+        }
+    }
+
+    /** Copies a byte range of another file to the current position without decoding it. */
+    void transferFrom(FileChannel source, long offset, long length) throws IOException {
+        flush();
+        long done = 0;
+        while (done < length) {
+            long n = source.transferTo(offset + done, length - done, channel);
+            if (n <= 0 && offset + done >= source.size()) {
+                throw new EOFException("Source file ended at offset " + (offset + done));
+            }
+            done += n;
+        }
+        bufferStart = channel.position();
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        bufferStart = channel.position();
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buffer.remaining() < n) flush();
+    }
+}
@@ -0,0 +1,525 @@
+import javax.swing.*;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shows two entry lists side by side, aligned by an {@link EntryDiff}: an open tab against another
+ * tab or a file on disk. Rows that differ are tinted and can be stepped through. "Merge..." takes
+ * the right side's changes since a common ancestor into the left tab, as one undoable step.
+ *
+ * Both lists are copied when Compare is pressed and diffed in the background; the view then reads
+ * the copies through the hunks, so showing a row costs the same on any size of list.
+ */
+public class CompareDialog extends JDialog {
+
+    private static final Metrics.Timer COMPARE_TIMER = Metrics.timer("compare.diff");
+    private static final Metrics.Timer MERGE_TIMER = Metrics.timer("compare.merge");
+    private static final Color CHANGED = new Color(85, 75, 30);
+    private static final Color REMOVED = new Color(90, 40, 40);
+    private static final Color ADDED = new Color(35, 80, 45);
+    private static final Color MISSING = new Color(35, 35, 35);
+    private static final Source CHOOSE_FILE = new Source("File on disk...", null, null);
+
+    private final WorldsEditor owner;
+    private final JComboBox<Source> leftBox = new JComboBox<>();
+    private final JComboBox<Source> rightBox = new JComboBox<>();
+    private final JTable table = new JTable();
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton mergeButton = new JButton("Merge into Left...");
+    private AlignedModel aligned = new AlignedModel(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    private Source shownLeft, shownRight; // What the aligned view was computed from
+    private SwingWorker<?, ?> worker; // Non-null while a diff or merge runs
+
+    // One side of the comparison: an open tab, or a file that is read when compared.
+    private static class Source {
+        final String title;
+        final JTable table;
+        final File file;
+
+        Source(String title, JTable table, File file) {
+            this.title = title;
+            this.table = table;
+            this.file = file;
+        }
+
+        BookmarkTableModel model() {
+            return (BookmarkTableModel) table.getModel();
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    public CompareDialog(WorldsEditor owner) {
+        super(owner, "Compare", false);
+        this.owner = owner;
+
+        JButton compareButton = new JButton("Compare");
+        compareButton.addActionListener(e -> startCompare());
+        JButton swapButton = new JButton("Swap");
+        swapButton.addActionListener(e -> {
+            Source left = (Source) leftBox.getSelectedItem();
+            Source right = (Source) rightBox.getSelectedItem();
+            if (right == null || right.table == null) return; // Only a tab can be the left side
+            leftBox.setSelectedItem(right);
+            rightBox.setSelectedItem(left);
+            startCompare();
+        });
+        rightBox.addActionListener(e -> {
+            if (rightBox.getSelectedItem() == CHOOSE_FILE) chooseRightFile();
+        });
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 2));
+        top.add(new JLabel("Left:"));
+        top.add(leftBox);
+        top.add(new JLabel("Right:"));
+        top.add(rightBox);
+        top.add(swapButton);
+        top.add(compareButton);
+
+        table.setModel(aligned);
+        ChangeRenderer renderer = new ChangeRenderer();
+        table.setDefaultRenderer(Object.class, renderer);
+        table.setDefaultRenderer(String.class, renderer);
+        table.setRowHeight(BookmarkCellRenderer.rowHeight(table));
+        table.setAutoCreateColumnsFromModel(false);
+        table.setFillsViewportHeight(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setBackground(new Color(45, 45, 45));
+        table.setForeground(Color.WHITE);
+        table.setGridColor(new Color(60, 60, 60));
+        table.createDefaultColumnsFromModel();
+        sizeColumns();
+        JScrollPane tablePane = new JScrollPane(table);
+        tablePane.getViewport().setBackground(new Color(45, 45, 45));
+        tablePane.setPreferredSize(new Dimension(900, 480));
+
+        JButton previousButton = new JButton("Previous Change");
+        previousButton.addActionListener(e -> goToChange(false));
+        JButton nextButton = new JButton("Next Change");
+        nextButton.addActionListener(e -> goToChange(true));
+        mergeButton.addActionListener(e -> onMerge());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        buttons.add(previousButton);
+        buttons.add(nextButton);
+        buttons.add(mergeButton);
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+        JPanel status = new JPanel(new BorderLayout(5, 0));
+        status.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        status.add(statusLabel, BorderLayout.CENTER);
+        status.add(progressBar, BorderLayout.WEST);
+        status.add(buttons, BorderLayout.EAST);
+
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(top, BorderLayout.NORTH);
+        content.add(tablePane, BorderLayout.CENTER);
+        content.add(status, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        pack();
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
+    }
+
+    /** Shows the dialog with the given tab on the left and the next open tab, if any, on the right. */
+    public void showFor(int tabIndex) {
+        Source right = (Source) rightBox.getSelectedItem();
+        List<Source> tabs = new ArrayList<>();
+        for (int i = 0; i < owner.getTabCount(); i++) {
+            tabs.add(new Source(owner.getTabTitle(i), owner.getTable(i), null));
+        }
+        leftBox.removeAllItems();
+        rightBox.removeAllItems();
+        for (Source tab : tabs) {
+            leftBox.addItem(tab);
+            rightBox.addItem(tab);
+        }
+        if (right != null && right.file != null) rightBox.addItem(right);
+        rightBox.addItem(CHOOSE_FILE);
+        leftBox.setSelectedIndex(tabIndex);
+        if (right != null && right.file != null) {
+            rightBox.setSelectedItem(right);
+        } else if (tabs.size() > 1) {
+            rightBox.setSelectedIndex(tabIndex + 1 < tabs.size() ? tabIndex + 1 : 0);
+        } else {
+            rightBox.setSelectedIndex(-1);
+        }
+        setVisible(true);
+        if (rightBox.getSelectedItem() != null) startCompare();
+    }
+
+    private void chooseRightFile() {
+        JFileChooser chooser = new JFileChooser(shownRight != null && shownRight.file != null ? shownRight.file.getParentFile() : null);
+        chooser.setDialogTitle("Compare With");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            rightBox.setSelectedIndex(-1);
+            return;
+        }
+        File file = chooser.getSelectedFile().getAbsoluteFile();
+        Source source = new Source(file.getName() + " (on disk)", null, file);
+        rightBox.insertItemAt(source, rightBox.getItemCount() - 1);
+        rightBox.setSelectedItem(source);
+    }
+
+    // --- Comparing ---
+
+    private void startCompare() {
+        Source left = (Source) leftBox.getSelectedItem();
+        Source right = (Source) rightBox.getSelectedItem();
+        if (left == null || right == null || right == CHOOSE_FILE || worker != null) return;
+        if (!isOpen(left) || (right.table != null && !isOpen(right))) {
+            statusLabel.setText("That tab has been closed.");
+            return;
+        }
+        if (isLoading(left) || isLoading(right)) {
+            statusLabel.setText("Wait for the files to finish loading.");
+            return;
+        }
+        List<Persister.BookmarkEntry> leftEntries = snapshot(left);
+        List<Persister.BookmarkEntry> rightEntries = right.table != null ? snapshot(right) : null;
+        long started = System.nanoTime();
+        SwingWorker<List<EntryDiff.Hunk>, Void> diff = new SwingWorker<List<EntryDiff.Hunk>, Void>() {
+            List<Persister.BookmarkEntry> rightLoaded = rightEntries;
+
+            @Override
+            protected List<EntryDiff.Hunk> doInBackground() throws IOException {
+                if (rightLoaded == null) rightLoaded = Persister.loadFromFilePacked(right.file).entries;
+                return EntryDiff.diff(leftEntries, rightLoaded);
+            }
+
+            @Override
+            protected void done() {
+                finished(this);
+                try {
+                    List<EntryDiff.Hunk> hunks = get();
+                    COMPARE_TIMER.record(started, 0, leftEntries.size() + rightLoaded.size());
+                    show(left, right, new AlignedModel(leftEntries, rightLoaded, hunks));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("Could not read " + right.file.getName() + ": " + cause.getMessage());
+                }
+            }
+        };
+        run(diff, "Comparing...");
+    }
+
+    private void show(Source left, Source right, AlignedModel model) {
+        shownLeft = left;
+        shownRight = right;
+        aligned = model;
+        table.setModel(model); // Keeps the columns, which are not recreated from the model
+        int changed = 0, removed = 0, added = 0;
+        for (EntryDiff.Hunk hunk : model.hunks) {
+            int common = Math.min(hunk.oldCount, hunk.newCount);
+            changed += common;
+            removed += hunk.oldCount - common;
+            added += hunk.newCount - common;
+        }
+        statusLabel.setText(model.hunks.isEmpty() ? "The lists are identical."
+                : String.format("%,d changes: %,d rows differ, %,d only on the left, %,d only on the right",
+                        model.hunks.size(), changed, removed, added));
+        if (!model.hunks.isEmpty()) scrollTo(model.hunkRows[0]);
+    }
+
+    // Steps to the first row of the next or previous change, from the selection.
+    private void goToChange(boolean forward) {
+        if (aligned.hunks.isEmpty()) return;
+        int from = table.getSelectedRow();
+        int[] rows = aligned.hunkRows;
+        int at = Arrays.binarySearch(rows, from);
+        int next;
+        if (forward) {
+            next = at >= 0 ? at + 1 : -at - 1;
+            if (next == rows.length) next = 0;
+        } else {
+            next = (at >= 0 ? at : -at - 1) - 1;
+            if (next < 0) next = rows.length - 1;
+        }
+        scrollTo(rows[next]);
+    }
+
+    private void scrollTo(int row) {
+        table.changeSelection(row, 0, false, false);
+        // Shows a little of what precedes the change
+        Rectangle rect = table.getCellRect(Math.max(0, row - 3), 0, true);
+        rect.add(table.getCellRect(row, 0, true));
+        table.scrollRectToVisible(rect);
+    }
+
+    // --- Merging ---
+
+    private void onMerge() {
+        if (worker != null) return;
+        if (shownLeft == null || shownLeft.table == null || !isOpen(shownLeft)) {
+            JOptionPane.showMessageDialog(this, "Compare an open tab on the left first.", "Merge", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (isLoading(shownLeft)) return;
+
+        // The ancestor both sides were edited from
+        List<Source> choices = new ArrayList<>();
+        for (int i = 0; i < owner.getTabCount(); i++) {
+            JTable tab = owner.getTable(i);
+            if (tab != shownLeft.table && tab != shownRight.table) choices.add(new Source(owner.getTabTitle(i), tab, null));
+        }
+        choices.add(CHOOSE_FILE);
+        Source base = (Source) JOptionPane.showInputDialog(this,
+                "Merge the changes made in " + shownRight + " since which version?",
+                "Common Ancestor", JOptionPane.QUESTION_MESSAGE, null, choices.toArray(), choices.get(0));
+        if (base == null) return;
+        if (base == CHOOSE_FILE) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Common Ancestor");
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            base = new Source(chooser.getSelectedFile().getName(), null, chooser.getSelectedFile());
+        } else if (isLoading(base)) {
+            return;
+        }
+
+        Source target = shownLeft;
+        BookmarkTableModel model = target.model();
+        List<Persister.BookmarkEntry> ours = snapshot(target);
+        List<Persister.BookmarkEntry> theirs = aligned.right; // As shown, even if the right tab changed since
+        List<Persister.BookmarkEntry> baseEntries = base.table != null ? snapshot(base) : null;
+        File baseFile = base.file;
+        // Edits to the target made while the merge runs would shift the rows it applies to
+        int[] changes = new int[1];
+        TableModelListener counter = e -> changes[0]++;
+        model.addTableModelListener(counter);
+        long started = System.nanoTime();
+        SwingWorker<EntryDiff.Rebase, Void> merge = new SwingWorker<EntryDiff.Rebase, Void>() {
+            @Override
+            protected EntryDiff.Rebase doInBackground() throws IOException {
+                List<Persister.BookmarkEntry> ancestor = baseEntries != null ? baseEntries : Persister.loadFromFilePacked(baseFile).entries;
+                return EntryDiff.rebase(ancestor, ours, theirs);
+            }
+
+            @Override
+            protected void done() {
+                finished(this);
+                model.removeTableModelListener(counter);
+                EntryDiff.Rebase rebase;
+                try {
+                    rebase = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(CompareDialog.this, "Could not read the ancestor:\n" + cause.getMessage(),
+                            "Merge", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                if (target.table.isEditing()) target.table.getCellEditor().stopCellEditing();
+                if (changes[0] != 0 || !isOpen(target)) {
+                    JOptionPane.showMessageDialog(CompareDialog.this, target + " changed while merging; nothing was merged.",
+                            "Merge", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                if (!rebase.applicable.isEmpty()) model.applyHunks(rebase.applicable, theirs);
+                MERGE_TIMER.record(started, 0, rebase.applicable.size());
+                reportMerge(target, rebase);
+                startCompare();
+            }
+        };
+        run(merge, "Merging...");
+    }
+
+    private void reportMerge(Source target, EntryDiff.Rebase rebase) {
+        String text = rebase.applicable.size() + " change(s) from " + shownRight + " were merged into " + target + ".";
+        if (rebase.conflicts.isEmpty()) {
+            JOptionPane.showMessageDialog(this, text, "Merge", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        StringBuilder rows = new StringBuilder();
+        int shown = 0;
+        for (EntryDiff.Hunk conflict : rebase.conflicts) {
+            if (shown++ == 10) {
+                rows.append("\n  ...");
+                break;
+            }
+            // Rows here moved by the changes applied above them
+            int here = conflict.oldStart;
+            for (EntryDiff.Hunk hunk : rebase.applicable) {
+                if (hunk.oldStart < conflict.oldStart) here += hunk.newCount - hunk.oldCount;
+            }
+            rows.append("\n  ").append(rowRange(here, conflict.oldCount)).append(" on the left, ")
+                    .append(rowRange(conflict.newStart, conflict.newCount)).append(" on the right");
+        }
+        JOptionPane.showMessageDialog(this, text + "\n" + rebase.conflicts.size()
+                        + " change(s) overlap edits made on the left and were not applied; the left version was kept:" + rows,
+                "Merge", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private static String rowRange(int start, int count) {
+        if (count == 0) return "before row " + (start + 1);
+        return count == 1 ? "row " + (start + 1) : "rows " + (start + 1) + "-" + (start + count);
+    }
+
+    // --- Helpers ---
+
+    private void run(SwingWorker<?, ?> task, String status) {
+        worker = task;
+        mergeButton.setEnabled(false);
+        progressBar.setVisible(true);
+        statusLabel.setText(status);
+        task.execute();
+    }
+
+    private void finished(SwingWorker<?, ?> task) {
+        if (worker != task) return;
+        worker = null;
+        mergeButton.setEnabled(true);
+        progressBar.setVisible(false);
+    }
+
+    private boolean isOpen(Source source) {
+        for (int i = 0; i < owner.getTabCount(); i++) {
+            if (owner.getTable(i) == source.table) return true;
+        }
+        return false;
+    }
+
+    private boolean isLoading(Source source) {
+        if (source.table == null) return false;
+        for (int i = 0; i < owner.getTabCount(); i++) {
+            if (owner.getTable(i) == source.table) return owner.isTabLoading(i);
+        }
+        return false;
+    }
+
+    // A copy the background diff can read while the tab goes on being edited.
+    private static List<Persister.BookmarkEntry> snapshot(Source source) {
+        List<Persister.BookmarkEntry> entries = source.model().getEntries();
+        if (entries instanceof PackedEntryList) return ((PackedEntryList) entries).snapshot();
+        return new ArrayList<>(entries);
+    }
+
+    private void sizeColumns() {
+        int[] widths = {50, 160, 240, 50, 160, 240};
+        for (int i = 0; i < widths.length; i++) table.getColumnModel().getColumn(i).setPreferredWidth(widths[i]);
+    }
+
+    // --- Aligned view ---
+
+    // Both lists row by row: equal runs side by side, and each hunk as its removed rows next to
+    // its added ones, padded with blanks on the shorter side.
+    private static class AlignedModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"#", "Name", "Value", "#", "Name", "Value"};
+
+        final List<Persister.BookmarkEntry> left, right;
+        final List<EntryDiff.Hunk> hunks;
+        final int[] hunkRows; // Aligned row each hunk starts at
+        private final int rowCount;
+
+        AlignedModel(List<Persister.BookmarkEntry> left, List<Persister.BookmarkEntry> right, List<EntryDiff.Hunk> hunks) {
+            this.left = left;
+            this.right = right;
+            this.hunks = hunks;
+            hunkRows = new int[hunks.size()];
+            int extra = 0; // Padding rows so far
+            for (int i = 0; i < hunkRows.length; i++) {
+                EntryDiff.Hunk hunk = hunks.get(i);
+                hunkRows[i] = hunk.oldStart + extra;
+                extra += Math.max(hunk.oldCount, hunk.newCount) - hunk.oldCount;
+            }
+            rowCount = left.size() + extra;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            boolean onLeft = column < 3;
+            int index = onLeft ? leftIndex(row) : rightIndex(row);
+            if (index == -1) return "";
+            Persister.BookmarkEntry entry = (onLeft ? left : right).get(index);
+            switch (column % 3) {
+                case 0: return String.valueOf(index + 1);
+                case 1: return entry.name;
+                default: return entry.value;
+            }
+        }
+
+        /** Returns the hunk the aligned row belongs to, or null if both sides are equal there. */
+        EntryDiff.Hunk hunkAt(int row) {
+            int i = hunkBefore(row);
+            if (i == -1) return null;
+            EntryDiff.Hunk hunk = hunks.get(i);
+            return row - hunkRows[i] < Math.max(hunk.oldCount, hunk.newCount) ? hunk : null;
+        }
+
+        int leftIndex(int row) {
+            int i = hunkBefore(row);
+            if (i == -1) return row;
+            EntryDiff.Hunk hunk = hunks.get(i);
+            int offset = row - hunkRows[i];
+            int span = Math.max(hunk.oldCount, hunk.newCount);
+            if (offset >= span) return hunk.oldEnd() + offset - span;
+            return offset < hunk.oldCount ? hunk.oldStart + offset : -1;
+        }
+
+        int rightIndex(int row) {
+            int i = hunkBefore(row);
+            if (i == -1) return row;
+            EntryDiff.Hunk hunk = hunks.get(i);
+            int offset = row - hunkRows[i];
+            int span = Math.max(hunk.oldCount, hunk.newCount);
+            if (offset >= span) return hunk.newEnd() + offset - span;
+            return offset < hunk.newCount ? hunk.newStart + offset : -1;
+        }
+
+        // The last hunk starting at or before the row, or -1.
+        private int hunkBefore(int row) {
+            int low = 0, high = hunkRows.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (hunkRows[mid] <= row) low = mid + 1;
+                else high = mid - 1;
+            }
+            return high;
+        }
+    }
+
+    // Tints the rows of each change: both sides where rows were replaced, and the one side that
+    // has rows where the other has none.
+    private class ChangeRenderer extends BookmarkCellRenderer {
+        @Override
+        protected Color background(JTable table, int row, int column) {
+            EntryDiff.Hunk hunk = aligned.hunkAt(row);
+            if (hunk == null) return table.getBackground();
+            boolean onLeft = table.convertColumnIndexToModel(column) < 3;
+            int index = onLeft ? aligned.leftIndex(row) : aligned.rightIndex(row);
+            if (index == -1) return MISSING;
+            int offset = onLeft ? index - hunk.oldStart : index - hunk.newStart;
+            if (offset < Math.min(hunk.oldCount, hunk.newCount)) return CHANGED;
+            return onLeft ? REMOVED : ADDED;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import javax.swing.SwingUtilities;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects when the Event Dispatch Thread stops responding. A daemon thread posts an empty event
+ * every {@code CHECK_MILLIS} and waits for the EDT to run it; if that takes longer than the
+ * threshold, the EDT's stack trace is taken while it is still blocked and reported to
+ * {@link Metrics} once the EDT catches up. Modal dialogs keep running events, so they do not count.
+ *
+ * The threshold is 500 ms unless set with -Dworlds.edtStallMillis. As the pings never stop, AWT
+ * will not shut down on its own once this runs; the editor exits through its window instead.
+ */
+public class EdtWatchdog implements Runnable {
+
+    private static final long CHECK_MILLIS = 100;
+    private static final int MAX_FRAMES = 40;
+    private static final Metrics.Timer STALLS = Metrics.timer("edt.stall");
+
+    private final long thresholdNanos;
+    private final AtomicLong answered = new AtomicLong(); // Time the EDT ran the last ping, or 0
+    private volatile Thread edt;
+
+    private EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /** Starts watching the EDT for the rest of the process. */
+    public static void start() {
+        Thread thread = new Thread(new EdtWatchdog(Long.getLong("worlds.edtStallMillis", 500)), "edt-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                answered.set(0);
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> {
+                    edt = Thread.currentThread();
+                    answered.set(System.nanoTime());
+                });
+                StackTraceElement[] blockedAt = null;
+                Thread blockedThread = null;
+                Thread.sleep(CHECK_MILLIS);
+                while (answered.get() == 0) {
+                    if (blockedAt == null && System.nanoTime() - posted >= thresholdNanos && edt != null) {
+                        blockedThread = edt;
+                        blockedAt = blockedThread.getStackTrace();
+                    }
+                    Thread.sleep(CHECK_MILLIS);
+                }
+                if (blockedAt != null) {
+                    long blockedNanos = answered.get() - posted;
+                    STALLS.recordNanos(blockedNanos, 0, 0);
+                    Metrics.addStallReport(report(blockedThread, blockedAt, blockedNanos));
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private static String report(Thread thread, StackTraceElement[] stack, long blockedNanos) {
+        StringBuilder text = new StringBuilder();
+        text.append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .append(": ").append(thread.getName()).append(" blocked for ")
+                .append(TimeUnit.NANOSECONDS.toMillis(blockedNanos)).append(" ms at");
+        for (int i = 0; i < Math.min(stack.length, MAX_FRAMES); i++) {
+            text.append("\n    at ").append(stack[i]);
+        }
+        if (stack.length > MAX_FRAMES) text.append("\n    ... ").append(stack.length - MAX_FRAMES).append(" more");
+        return text.toString();
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line-level diff of two entry lists with Myers' O(ND) algorithm, in its linear-space form
+ * (middle snake, divide and conquer). Entries are equal when both name and value are equal;
+ * two packed lists are compared on their encoded bytes, so nothing is decoded.
+ *
+ * {@link #rebase} builds a three-way merge on top of it: given the common base, a locally
+ * edited copy and a changed copy from elsewhere, it finds which outside changes can be applied
+ * to the local copy and which ones overlap local edits.
+ */
+public class EntryDiff {
+
+    // Beyond this many edits (forward or backward) a region is reported as one replacement,
+    // which keeps the diff of two unrelated files from going quadratic.
+    private static final int MAX_COST = 8192;
+
+    /**
+     * One difference: the entries oldStart..oldStart+oldCount-1 of the old list are replaced by
+     * newStart..newStart+newCount-1 of the new list. A count of 0 marks an insertion point.
+     */
+    public static final class Hunk {
+        public final int oldStart, oldCount, newStart, newCount;
+
+        Hunk(int oldStart, int oldCount, int newStart, int newCount) {
+            this.oldStart = oldStart;
+            this.oldCount = oldCount;
+            this.newStart = newStart;
+            this.newCount = newCount;
+        }
+
+        public int oldEnd() { return oldStart + oldCount; }
+        public int newEnd() { return newStart + newCount; }
+
+        @Override
+        public String toString() {
+            return "-" + oldStart + "," + oldCount + " +" + newStart + "," + newCount;
+        }
+    }
+
+    /** The outcome of {@link #rebase}. */
+    public static final class Rebase {
+        /** Outside changes that do not touch local edits; old side in local rows, new side in the changed list. */
+        public final List<Hunk> applicable = new ArrayList<>();
+        /** Overlapping changes; old side is the local rows involved, new side the rows of the changed list. */
+        public final List<Hunk> conflicts = new ArrayList<>();
+    }
+
+    private final List<Persister.BookmarkEntry> a, b;
+    private final PackedEntryList packedA, packedB; // Both set, or both null
+    // Class numbers of the entries between the common prefix and suffix; equal entries share one
+    private int[] classA, classB;
+    private int classified; // Index of classA[0] in a and classB[0] in b, i.e. the prefix length
+    private final List<Hunk> hunks = new ArrayList<>();
+    private int[] forward, backward;
+
+    private EntryDiff(List<Persister.BookmarkEntry> a, List<Persister.BookmarkEntry> b) {
+        this.a = a;
+        this.b = b;
+        boolean packed = a instanceof PackedEntryList && b instanceof PackedEntryList;
+        this.packedA = packed ? (PackedEntryList) a : null;
+        this.packedB = packed ? (PackedEntryList) b : null;
+    }
+
+    /**
+     * Computes a minimal edit script from one list to another.
+     * @return The differences in ascending order; empty if the lists are equal.
+     */
+    public static List<Hunk> diff(List<Persister.BookmarkEntry> oldEntries, List<Persister.BookmarkEntry> newEntries) {
+        EntryDiff diff = new EntryDiff(oldEntries, newEntries);
+        // Most changes are local, so the unchanged head and tail are skipped before anything is hashed
+        int aHi = oldEntries.size(), bHi = newEntries.size();
+        int lo = 0;
+        while (lo < aHi && lo < bHi && diff.equal(lo, lo)) lo++;
+        while (lo < aHi && lo < bHi && diff.equal(aHi - 1, bHi - 1)) {
+            aHi--;
+            bHi--;
+        }
+        diff.classify(lo, aHi, bHi);
+        diff.compare(lo, aHi, lo, bHi);
+        return diff.hunks;
+    }
+
+    /**
+     * Replays the changes from {@code base} to {@code theirs} onto {@code ours}, another edited
+     * copy of {@code base}. A change of theirs conflicts when it replaces base entries that ours
+     * also replaced, or when one side inserts inside or right next to a change of the other, where
+     * the order of the new rows would be a guess. The same change made on both sides is not a
+     * conflict and needs no applying.
+     */
+    public static Rebase rebase(List<Persister.BookmarkEntry> base, List<Persister.BookmarkEntry> ours,
+                                List<Persister.BookmarkEntry> theirs) {
+        List<Hunk> mine = diff(base, ours);
+        List<Hunk> other = diff(base, theirs);
+        Rebase result = new Rebase();
+        int m = 0;
+        int shift = 0; // Rows of ours minus rows of base, over the hunks of ours passed so far
+        for (int o = 0; o < other.size(); ) {
+            Hunk first = other.get(o);
+            while (m < mine.size() && mine.get(m).oldEnd() <= first.oldStart && !overlaps(mine.get(m), first.oldStart, first.oldEnd())) {
+                shift += mine.get(m).newCount - mine.get(m).oldCount;
+                m++;
+            }
+            // Grow a cluster of base entries until no hunk on either side overlaps its edge
+            int start = first.oldStart, end = first.oldEnd();
+            int mEnd = m, oEnd = o + 1;
+            boolean grown = true;
+            while (grown) {
+                grown = false;
+                while (mEnd < mine.size() && overlaps(mine.get(mEnd), start, end)) {
+                    start = Math.min(start, mine.get(mEnd).oldStart);
+                    end = Math.max(end, mine.get(mEnd++).oldEnd());
+                    grown = true;
+                }
+                while (oEnd < other.size() && overlaps(other.get(oEnd), start, end)) {
+                    end = Math.max(end, other.get(oEnd++).oldEnd());
+                    grown = true;
+                }
+            }
+            if (mEnd == m) {
+                result.applicable.add(new Hunk(first.oldStart + shift, first.oldCount, first.newStart, first.newCount));
+            } else {
+                int localGrowth = 0;
+                for (int i = m; i < mEnd; i++) localGrowth += mine.get(i).newCount - mine.get(i).oldCount;
+                if (mEnd - m > 1 || oEnd - o > 1 || !sameChange(ours, mine.get(m), theirs, first)) {
+                    Hunk last = other.get(oEnd - 1);
+                    int theirsStart = first.newStart - (first.oldStart - start);
+                    int theirsEnd = last.newEnd() + (end - last.oldEnd());
+                    result.conflicts.add(new Hunk(start + shift, end - start + localGrowth, theirsStart, theirsEnd - theirsStart));
+                }
+                shift += localGrowth;
+                m = mEnd;
+            }
+            o = oEnd;
+        }
+        return result;
+    }
+
+    // True if a hunk touches the base range start..end (an insertion point when they are equal):
+    // the ranges intersect, or one side inserts within or at either edge of the other.
+    private static boolean overlaps(Hunk h, int start, int end) {
+        if (start == end) return h.oldStart <= start && start <= h.oldEnd();
+        if (h.oldCount == 0) return start <= h.oldStart && h.oldStart <= end;
+        return h.oldStart < end && start < h.oldEnd();
+    }
+
+    private static boolean sameChange(List<Persister.BookmarkEntry> ours, Hunk mine,
+                                      List<Persister.BookmarkEntry> theirs, Hunk other) {
+        if (mine.oldStart != other.oldStart || mine.oldCount != other.oldCount || mine.newCount != other.newCount) return false;
+        return diff(ours.subList(mine.newStart, mine.newEnd()), theirs.subList(other.newStart, other.newEnd())).isEmpty();
+    }
+
+    // --- Myers ---
+
+    // Diffs a[aLo..aHi) against b[bLo..bHi), appending hunks in order.
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && same(aLo, bLo)) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && same(aHi - 1, bHi - 1)) {
+            aHi--;
+            bHi--;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            emit(aLo, aHi - aLo, bLo, bHi - bLo);
+            return;
+        }
+        int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+        if (snake == null) {
+            emit(aLo, aHi - aLo, bLo, bHi - bLo);
+            return;
+        }
+        compare(aLo, snake[0], bLo, snake[1]);
+        compare(snake[2], aHi, snake[3], bHi);
+    }
+
+    // Finds the middle snake of an optimal edit path as {x, y, u, v} (snake from (x,y) to (u,v)),
+    // or null if the region needs more than MAX_COST edits.
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int maxD = Math.min((n + m + 1) / 2, MAX_COST);
+        int offset = maxD + 1;
+        int size = 2 * maxD + 3;
+        if (forward == null || forward.length < size) {
+            forward = new int[size];
+            backward = new int[size];
+        }
+        int[] vf = forward, vb = backward;
+        vf[offset + 1] = 0;
+        vb[offset + 1] = 0;
+        for (int d = 0; d <= maxD; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && vf[offset + k - 1] < vf[offset + k + 1])
+                        ? vf[offset + k + 1] : vf[offset + k - 1] + 1;
+                int y = x - k;
+                int x0 = x, y0 = y;
+                while (x < n && y < m && same(aLo + x, bLo + y)) {
+                    x++;
+                    y++;
+                }
+                vf[offset + k] = x;
+                int kb = delta - k;
+                if (odd && kb >= -(d - 1) && kb <= d - 1 && x + vb[offset + kb] >= n) {
+                    return new int[] {aLo + x0, bLo + y0, aLo + x, bLo + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && vb[offset + k - 1] < vb[offset + k + 1])
+                        ? vb[offset + k + 1] : vb[offset + k - 1] + 1;
+                int y = x - k;
+                int x0 = x, y0 = y;
+                while (x < n && y < m && same(aHi - 1 - x, bHi - 1 - y)) {
+                    x++;
+                    y++;
+                }
+                vb[offset + k] = x;
+                int kf = delta - k;
+                if (!odd && kf >= -d && kf <= d && x + vf[offset + kf] >= n) {
+                    return new int[] {aHi - x, bHi - y, aHi - x0, bHi - y0};
+                }
+            }
+        }
+        return null;
+    }
+
+    // Appends a hunk, merging it into the previous one when they are adjacent.
+    private void emit(int oldStart, int oldCount, int newStart, int newCount) {
+        if (oldCount == 0 && newCount == 0) return;
+        if (!hunks.isEmpty()) {
+            Hunk last = hunks.get(hunks.size() - 1);
+            if (last.oldEnd() == oldStart && last.newEnd() == newStart) {
+                hunks.set(hunks.size() - 1, new Hunk(last.oldStart, last.oldCount + oldCount, last.newStart, last.newCount + newCount));
+                return;
+            }
+        }
+        hunks.add(new Hunk(oldStart, oldCount, newStart, newCount));
+    }
+
+    private boolean same(int i, int j) {
+        return classA[i - classified] == classB[j - classified];
+    }
+
+    private boolean equal(int i, int j) {
+        return equal(a, i, b, j);
+    }
+
+    private boolean equal(List<Persister.BookmarkEntry> x, int i, List<Persister.BookmarkEntry> y, int j) {
+        if (packedA != null) return ((PackedEntryList) x).entryEquals(i, (PackedEntryList) y, j);
+        Persister.BookmarkEntry p = x.get(i);
+        Persister.BookmarkEntry q = y.get(j);
+        return p.name.equals(q.name) && p.value.equals(q.value);
+    }
+
+    // Numbers a[from..aTo) and b[from..bTo) so that equal entries get the same class, comparing
+    // each entry's bytes once here instead of on every step of the diff.
+    private void classify(int from, int aTo, int bTo) {
+        classified = from;
+        classA = new int[aTo - from];
+        classB = new int[bTo - from];
+        int total = classA.length + classB.length;
+        int[] slots = new int[Integer.highestOneBit(Math.max(2 * total, 16) - 1) << 1]; // Class + 1
+        int[] slotHashes = new int[slots.length];
+        int[] representatives = new int[total]; // Index in a, or ~index in b
+        int classes = 0;
+        int mask = slots.length - 1;
+        for (int n = 0; n < total; n++) {
+            boolean inA = n < classA.length;
+            List<Persister.BookmarkEntry> list = inA ? a : b;
+            int index = from + (inA ? n : n - classA.length);
+            int hash = hash(list, index);
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            int found = -1;
+            while (slots[slot] != 0) {
+                int candidate = slots[slot] - 1;
+                int rep = representatives[candidate];
+                if (slotHashes[slot] == hash && (rep >= 0 ? equal(a, rep, list, index) : equal(b, ~rep, list, index))) {
+                    found = candidate;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (found == -1) {
+                found = classes++;
+                representatives[found] = inA ? index : ~index;
+                slots[slot] = found + 1;
+                slotHashes[slot] = hash;
+            }
+            if (inA) classA[n] = found; else classB[n - classA.length] = found;
+        }
+    }
+
+    private int hash(List<Persister.BookmarkEntry> entries, int index) {
+        if (packedA != null) return ((PackedEntryList) entries).entryHash(index);
+        Persister.BookmarkEntry entry = entries.get(index);
+        return 31 * entry.name.hashCode() + entry.value.hashCode();
+    }
+}
@@ -0,0 +1,128 @@
+import javax.swing.SwingUtilities;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches open files for changes made by other programs, with one WatchService and one daemon
+ * thread for all of them. Each file's parent folder is registered once, however many files in it
+ * are watched. Events are coalesced per file until it has been quiet for a short while, since a
+ * writer usually produces several events for one save, and listeners run on the EDT.
+ */
+public class FileWatcher implements Closeable {
+
+    // How long a file must go without events before its listeners are told
+    private static final long SETTLE_MILLIS = 300;
+
+    private final WatchService service;
+    private final Map<Path, WatchKey> folders = new HashMap<>();
+    private final Map<Path, List<Runnable>> listeners = new HashMap<>(); // By absolute file path
+    private final Map<Path, Long> pending = new HashMap<>(); // File -> time its listeners are due
+
+    /**
+     * Starts the watcher thread.
+     * @throws IOException If the file system does not support watching.
+     */
+    public FileWatcher() throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this::run, "file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Calls {@code listener} on the EDT whenever the file is modified or replaced.
+     * @throws IOException If the file's folder cannot be watched.
+     */
+    public synchronized void watch(File file, Runnable listener) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        Path folder = path.getParent();
+        if (!folders.containsKey(folder)) {
+            folders.put(folder, folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        }
+        listeners.computeIfAbsent(path, p -> new ArrayList<>()).add(listener);
+    }
+
+    /** Stops calling a listener registered with {@link #watch}; the folder is released with its last file. */
+    public synchronized void unwatch(File file, Runnable listener) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        List<Runnable> fileListeners = listeners.get(path);
+        if (fileListeners == null || !fileListeners.remove(listener)) return;
+        if (!fileListeners.isEmpty()) return;
+        listeners.remove(path);
+        pending.remove(path);
+        Path folder = path.getParent();
+        for (Path watched : listeners.keySet()) {
+            if (watched.getParent().equals(folder)) return;
+        }
+        WatchKey key = folders.remove(folder);
+        if (key != null) key.cancel();
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close(); // Ends the thread
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = service.poll(nextDelay(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    record(key);
+                    key.reset();
+                }
+                fireSettled();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private synchronized void record(WatchKey key) {
+        Path folder = (Path) key.watchable();
+        long due = System.currentTimeMillis() + SETTLE_MILLIS;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost; assume every file in the folder changed
+                for (Path path : listeners.keySet()) {
+                    if (path.getParent().equals(folder)) pending.put(path, due);
+                }
+                continue;
+            }
+            Path path = folder.resolve((Path) event.context());
+            if (listeners.containsKey(path)) pending.put(path, due);
+        }
+    }
+
+    private synchronized long nextDelay() {
+        long next = Long.MAX_VALUE;
+        for (long due : pending.values()) next = Math.min(next, due);
+        return next == Long.MAX_VALUE ? 60_000 : Math.max(1, next - System.currentTimeMillis());
+    }
+
+    private synchronized void fireSettled() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Long> entry = it.next();
+            if (entry.getValue() > now) continue;
+            it.remove();
+            for (Runnable listener : new ArrayList<>(listeners.get(entry.getKey()))) {
+                SwingUtilities.invokeLater(listener);
+            }
+        }
+    }
+}
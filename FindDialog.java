@@ -2,13 +2,61 @@ import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FindDialog extends JDialog {
 
+    private static final int MAX_FIND_ALL_RESULTS = 10000;
+    private static final int RESULT_BATCH_SIZE = 256;
+    private static final Metrics.Timer KEYSTROKE_TIMER = Metrics.timer("search.keystroke");
+    private static final Metrics.Timer FIND_ALL_TIMER = Metrics.timer("search.findAll");
+
     private WorldsEditor owner;
     private JTextField searchField;
     private JButton findNextButton;
     private JButton findPreviousButton;
+    private JToggleButton findAllButton;
+    private JScrollPane resultsPane;
+    private DefaultListModel<FindResult> resultsModel = new DefaultListModel<>();
+
+    // --- Estado de "Find All": búsqueda en todas las pestañas fuera del EDT ---
+    private final ExecutorService findExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "find-all");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final List<Future<?>> runningSearches = new ArrayList<>();
+    private volatile int searchGeneration; // Las búsquedas de una generación anterior se descartan
+    private final Timer debounceTimer = new Timer(250, e -> findAll());
+
+    // Una coincidencia de "Find All"; la fila se resuelve al hacer clic, por si la tabla cambió
+    private static class FindResult {
+        final String tabTitle;
+        final SearchIndex index;
+        final SearchIndex.Row row;
+        final int column;
+        String snippet;
+
+        FindResult(String tabTitle, SearchIndex index, SearchIndex.Row row, int column) {
+            this.tabTitle = tabTitle;
+            this.index = index;
+            this.row = row;
+            this.column = column;
+        }
+
+        @Override
+        public String toString() {
+            return tabTitle + "  (" + (column == 0 ? "Name" : "Value") + ")  " + snippet;
+        }
+    }
 
     public FindDialog(WorldsEditor owner) {
         super(owner, "Find", false); // false = no modal
@@ -18,6 +66,13 @@ public class FindDialog extends JDialog {
         searchField = new JTextField(20);
         findNextButton = createNavButton("assets/down.png", "Find Next");
         findPreviousButton = createNavButton("assets/up.png", "Find Previous");
+        findAllButton = new JToggleButton("Find All");
+        findAllButton.setToolTipText("Find in all open tabs");
+        JList<FindResult> resultsList = new JList<>(resultsModel);
+        resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsPane = new JScrollPane(resultsList);
+        resultsPane.setPreferredSize(new Dimension(520, 260));
+        resultsPane.setVisible(false);
 
         // --- Configuración del Layout ---
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -25,33 +80,44 @@ public class FindDialog extends JDialog {
         panel.add(searchField);
         panel.add(findPreviousButton);
         panel.add(findNextButton);
+        panel.add(findAllButton);
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(panel, BorderLayout.NORTH);
+        content.add(resultsPane, BorderLayout.CENTER);
         
         // --- Listeners para la funcionalidad ---
         findNextButton.addActionListener(e -> search(true));
         findPreviousButton.addActionListener(e -> search(false));
+        findAllButton.addActionListener(e -> {
+            resultsPane.setVisible(findAllButton.isSelected());
+            pack();
+            if (findAllButton.isSelected()) findAll(); else cancelRunningSearches();
+        });
+        resultsList.addListSelectionListener(e -> {
+            FindResult result = resultsList.getSelectedValue();
+            if (!e.getValueIsAdjusting() && result != null) {
+                owner.revealCell(result.index, result.row, result.column);
+            }
+        });
+        debounceTimer.setRepeats(false);
         
         searchField.getDocument().addDocumentListener(new DocumentListener() {
-            public void insertUpdate(DocumentEvent e) { search(true); }
-            public void removeUpdate(DocumentEvent e) { search(true); }
-            public void changedUpdate(DocumentEvent e) { search(true); }
+            public void insertUpdate(DocumentEvent e) { onSearchTextChanged(); }
+            public void removeUpdate(DocumentEvent e) { onSearchTextChanged(); }
+            public void changedUpdate(DocumentEvent e) { onSearchTextChanged(); }
         });
 
         // --- Configuración Final del Diálogo ---
-        setContentPane(panel);
+        setContentPane(content);
         pack(); // Ajusta el tamaño al contenido
         setLocationRelativeTo(owner);
         setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
     }
 
     private JButton createNavButton(String path, String tooltip) {
-        JButton button;
-        try {
-            ImageIcon icon = new ImageIcon(owner.getClass().getResource(path));
-            Image scaledImg = icon.getImage().getScaledInstance(16, 16, Image.SCALE_SMOOTH);
-            button = new JButton(new ImageIcon(scaledImg));
-        } catch (Exception e) {
-            button = new JButton(tooltip.equals("Find Next") ? ">" : "<");
-        }
+        // El icono se decodifica y escala una sola vez por proceso
+        ImageIcon icon = IconCache.get(path, 16);
+        JButton button = icon != null ? new JButton(icon) : new JButton(tooltip.equals("Find Next") ? ">" : "<");
         button.setToolTipText(tooltip);
         button.setMargin(new Insets(2, 2, 2, 2));
         return button;
@@ -61,56 +127,155 @@ public class FindDialog extends JDialog {
         JTable activeTable = owner.getActiveTable();
         if (activeTable == null) return;
 
-        String searchText = searchField.getText().toLowerCase();
+        String searchText = searchField.getText();
         if (searchText.isEmpty()) return;
 
+        // Matching cells, as modelRow * 2 + modelColumn in ascending order
+        int[] hits = owner.getActiveSearchIndex().find(searchText);
+
         int startRow = activeTable.getSelectedRow();
         int startCol = activeTable.getSelectedColumn();
+        int next = isReordered(activeTable)
+                ? nextHitInView(activeTable, hits, startRow, startCol, forward)
+                : nextHitInModel(activeTable, hits, startRow, startCol, forward);
+        if (next != -1) {
+            int row = next / 2;
+            int col = next % 2;
+            activeTable.changeSelection(row, col, false, false);
+            activeTable.scrollRectToVisible(activeTable.getCellRect(row, col, true));
+            return;
+        }
 
-        if (startRow == -1) startRow = 0;
-        if (startCol == -1) startCol = 0;
+        // Si no se encuentra, se podría añadir un feedback (ej. borde rojo)
+        searchField.setBackground(Color.PINK);
+        Timer timer = new Timer(500, e -> searchField.setBackground(Color.WHITE));
+        timer.setRepeats(false);
+        timer.start();
+    }
 
-        int rowCount = activeTable.getRowCount();
-        int colCount = activeTable.getColumnCount();
+    // Filas ordenadas o filtradas: el orden de la vista ya no es el del modelo
+    private static boolean isReordered(JTable table) {
+        RowSorter<?> sorter = table.getRowSorter();
+        return sorter instanceof BookmarkRowSorter && ((BookmarkRowSorter) sorter).isTransformed();
+    }
 
-        int currentRow = startRow;
-        int currentCol = startCol;
+    // Siguiente (o anterior) coincidencia tras la celda actual, dando la vuelta; devuelve viewRow * 2 + viewColumn o -1.
+    private static int nextHitInModel(JTable table, int[] hits, int startRow, int startCol, boolean forward) {
+        if (hits.length == 0) return -1;
+        int current = (startRow == -1 || startCol == -1) ? -1
+                : table.convertRowIndexToModel(startRow) * 2 + table.convertColumnIndexToModel(startCol);
+        int pos = Arrays.binarySearch(hits, current);
+        int next;
+        if (forward) {
+            next = pos >= 0 ? pos + 1 : -pos - 1;
+            if (next >= hits.length) next = 0;
+        } else {
+            next = (pos >= 0 ? pos : -pos - 1) - 1;
+            if (next < 0) next = hits.length - 1;
+        }
+        return table.convertRowIndexToView(hits[next] / 2) * 2 + table.convertColumnIndexToView(hits[next] % 2);
+    }
 
-        // Bucle para buscar en la tabla
-        for (int i = 0; i < rowCount * colCount; i++) {
+    // Igual, pero recorriendo los resultados en el orden de la vista y saltando las filas ocultas por el filtro.
+    private static int nextHitInView(JTable table, int[] hits, int startRow, int startCol, boolean forward) {
+        int current = (startRow == -1 || startCol == -1) ? (forward ? -1 : Integer.MAX_VALUE) : startRow * 2 + startCol;
+        int best = -1;
+        int wrap = -1; // Primera (o última) coincidencia visible, por si hay que dar la vuelta
+        for (int hit : hits) {
+            int row = table.convertRowIndexToView(hit / 2);
+            if (row == -1) continue;
+            int cell = row * 2 + table.convertColumnIndexToView(hit % 2);
             if (forward) {
-                currentCol++;
-                if (currentCol >= colCount) {
-                    currentCol = 0;
-                    currentRow++;
-                    if (currentRow >= rowCount) {
-                        currentRow = 0;
-                    }
+                if (cell > current && (best == -1 || cell < best)) best = cell;
+                if (wrap == -1 || cell < wrap) wrap = cell;
+            } else {
+                if (cell < current && (best == -1 || cell > best)) best = cell;
+                if (wrap == -1 || cell > wrap) wrap = cell;
+            }
+        }
+        return best != -1 ? best : wrap;
+    }
+
+    private void onSearchTextChanged() {
+        if (findAllButton.isSelected()) {
+            debounceTimer.restart(); // Espera a que se deje de teclear
+        } else {
+            long start = System.nanoTime();
+            search(true);
+            KEYSTROKE_TIMER.record(start);
+        }
+    }
+
+    // Busca en todas las pestañas en paralelo. En el EDT solo se lanzan las tareas y se publican
+    // los resultados: los índices que faltan se construyen y las filas se copian en cada tarea.
+    private void findAll() {
+        cancelRunningSearches();
+        resultsModel.clear();
+        String searchText = searchField.getText().toLowerCase();
+        if (searchText.isEmpty()) return;
+
+        int generation = searchGeneration;
+        AtomicInteger remaining = new AtomicInteger(MAX_FIND_ALL_RESULTS);
+        // Tiempo desde que se lanza la búsqueda hasta que termina la última pestaña
+        long start = System.nanoTime();
+        AtomicInteger pendingTabs = new AtomicInteger(owner.getTabCount());
+        AtomicInteger scannedRows = new AtomicInteger();
+        for (int t = 0; t < owner.getTabCount(); t++) {
+            String title = owner.getTabTitle(t);
+            SearchIndex built = owner.getBuiltSearchIndex(t);
+            // Si la pestaña aún no tiene índice, se copian sus entradas y se indexan en la tarea
+            Callable<SearchIndex> indexer = built != null ? () -> built : owner.searchIndexBuilder(t);
+            runningSearches.add(findExecutor.submit(() -> {
+                SearchIndex index = indexer.call(); // Null si la pestaña se cerró
+                if (index != null) {
+                    SearchIndex.Row[] rows = index.snapshot(); // Filas inmutables, copiadas entre dos eventos del modelo
+                    scanTab(generation, title, index, rows, searchText, remaining);
+                    scannedRows.addAndGet(rows.length);
                 }
-            } else { // backward
-                currentCol--;
-                if (currentCol < 0) {
-                    currentCol = colCount - 1;
-                    currentRow--;
-                    if (currentRow < 0) {
-                        currentRow = rowCount - 1;
-                    }
+                if (pendingTabs.decrementAndGet() == 0 && generation == searchGeneration) {
+                    FIND_ALL_TIMER.record(start, 0, scannedRows.get());
                 }
-            }
+                return null;
+            }));
+        }
+    }
 
-            Object cellValue = activeTable.getValueAt(currentRow, currentCol);
-            if (cellValue != null && cellValue.toString().toLowerCase().contains(searchText)) {
-                // Encontrado
-                activeTable.changeSelection(currentRow, currentCol, false, false);
-                activeTable.scrollRectToVisible(activeTable.getCellRect(currentRow, currentCol, true));
-                return;
+    private void scanTab(int generation, String title, SearchIndex index, SearchIndex.Row[] rows, String searchText, AtomicInteger remaining) {
+        List<FindResult> batch = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            if ((i & 4095) == 0 && (Thread.currentThread().isInterrupted() || generation != searchGeneration)) return;
+            SearchIndex.Row row = rows[i];
+            for (int column = 0; column < 2; column++) {
+                if (!(column == 0 ? row.name : row.value).contains(searchText)) continue;
+                if (remaining.getAndDecrement() <= 0) {
+                    publishResults(generation, batch);
+                    return;
+                }
+                batch.add(new FindResult(title, index, row, column));
+            }
+            if (batch.size() >= RESULT_BATCH_SIZE) {
+                publishResults(generation, batch);
+                batch = new ArrayList<>();
             }
         }
-        
-        // Si no se encuentra, se podría añadir un feedback (ej. borde rojo)
-        searchField.setBackground(Color.PINK);
-        Timer timer = new Timer(500, e -> searchField.setBackground(Color.WHITE));
-        timer.setRepeats(false);
-        timer.start();
+        publishResults(generation, batch);
+    }
+
+    private void publishResults(int generation, List<FindResult> batch) {
+        if (batch.isEmpty()) return;
+        SwingUtilities.invokeLater(() -> {
+            if (generation != searchGeneration) return;
+            for (FindResult result : batch) {
+                result.snippet = result.index.cellText(result.row, result.column);
+                if (result.snippet != null) resultsModel.addElement(result);
+            }
+        });
+    }
+
+    private void cancelRunningSearches() {
+        debounceTimer.stop();
+        searchGeneration++;
+        for (Future<?> search : runningSearches) search.cancel(true);
+        runningSearches.clear();
     }
-}
\ No newline at end of file
+}
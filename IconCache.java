@@ -0,0 +1,89 @@
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Icons bundled in the jar, each decoded and scaled once per process and shared by every window.
+ * {@link #preload} decodes a set of them on a background thread while the rest of startup runs;
+ * asking for an icon that is still being decoded waits for it instead of decoding it again.
+ */
+public final class IconCache {
+
+    private static final Map<String, FutureTask<ImageIcon>> icons = new ConcurrentHashMap<>();
+
+    private IconCache() {
+    }
+
+    /**
+     * Returns the icon at {@code path}, relative to the jar's root, at its own size.
+     * @return The icon, or null if it is missing or cannot be decoded.
+     */
+    public static ImageIcon get(String path) {
+        return get(path, 0);
+    }
+
+    /**
+     * Returns the icon at {@code path}, relative to the jar's root, scaled to {@code size} pixels
+     * square, or at its own size if {@code size} is 0.
+     * @return The icon, or null if it is missing or cannot be decoded.
+     */
+    public static ImageIcon get(String path, int size) {
+        FutureTask<ImageIcon> task = icons.computeIfAbsent(path + '@' + size, key -> new FutureTask<>(() -> load(path, size)));
+        task.run(); // Does nothing if it already ran or is running on another thread
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /** Decodes the given icons, at their own size, on a background thread. */
+    public static void preload(String... paths) {
+        Thread thread = new Thread(() -> {
+            for (String path : paths) get(path);
+        }, "icon-preload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static ImageIcon load(String path, int size) throws IOException {
+        URL url = IconCache.class.getResource(path.startsWith("/") ? path : "/" + path);
+        if (url == null) {
+            System.err.println("Icono '" + path + "' no encontrado.");
+            return null;
+        }
+        BufferedImage image = size == 0 ? ImageIO.read(url) : scale(get(path), size);
+        return image == null ? null : new ImageIcon(image);
+    }
+
+    // Halves the image until it is within twice the target size, then scales the rest of the way,
+    // which keeps the detail a single bilinear step would drop.
+    private static BufferedImage scale(ImageIcon original, int size) {
+        if (original == null) return null;
+        BufferedImage image = (BufferedImage) original.getImage();
+        int width = image.getWidth(), height = image.getHeight();
+        while (width != size || height != size) {
+            width = width / 2 >= size ? width / 2 : size;
+            height = height / 2 >= size ? height / 2 : size;
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = step.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+            g.dispose();
+            image = step;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,213 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.prefs.Preferences;
+
+/**
+ * Searches every file under a library folder through a {@link LibraryIndex}. The folder is
+ * remembered between runs; its saved index is read first, so lookups work right away, and it is
+ * brought up to date in the background each time the dialog is shown.
+ */
+public class LibraryDialog extends JDialog {
+
+    private static final int MAX_RESULTS = 2000;
+    private static final String ROOT_PREFERENCE = "libraryRoot";
+
+    private final WorldsEditor owner;
+    private final Preferences preferences = Preferences.userRoot().node("WorldsEditor");
+    private final JLabel rootLabel = new JLabel("No library folder chosen");
+    private final JTextField searchField = new JTextField(30);
+    private final JList<LibraryIndex.Hit> resultsList = new JList<>();
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private LibraryIndex index;
+    private SwingWorker<?, ?> updater; // Non-null while the index is being brought up to date
+
+    public LibraryDialog(WorldsEditor owner) {
+        super(owner, "Library", false);
+        this.owner = owner;
+
+        JButton chooseButton = new JButton("Choose Folder...");
+        chooseButton.addActionListener(e -> onChooseFolder());
+        JPanel rootPanel = new JPanel(new BorderLayout(5, 0));
+        rootPanel.add(new JLabel("Folder:"), BorderLayout.WEST);
+        rootPanel.add(rootLabel, BorderLayout.CENTER);
+        rootPanel.add(chooseButton, BorderLayout.EAST);
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.add(new JLabel("Find:"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        JPanel top = new JPanel(new GridLayout(2, 1, 0, 4));
+        top.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        top.add(rootPanel);
+        top.add(searchPanel);
+
+        resultsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsList.setCellRenderer(new HitRenderer());
+        JScrollPane resultsPane = new JScrollPane(resultsList);
+        resultsPane.setPreferredSize(new Dimension(640, 320));
+
+        progressBar.setVisible(false);
+        JPanel status = new JPanel(new BorderLayout(5, 0));
+        status.setBorder(BorderFactory.createEmptyBorder(4, 4, 4, 4));
+        status.add(statusLabel, BorderLayout.CENTER);
+        status.add(progressBar, BorderLayout.EAST);
+
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(top, BorderLayout.NORTH);
+        content.add(resultsPane, BorderLayout.CENTER);
+        content.add(status, BorderLayout.SOUTH);
+        setContentPane(content);
+
+        // Lookups take milliseconds, so they run on every keystroke
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { runQuery(); }
+            public void removeUpdate(DocumentEvent e) { runQuery(); }
+            public void changedUpdate(DocumentEvent e) { }
+        });
+        resultsList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) openSelected();
+            }
+        });
+        resultsList.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "openEntry");
+        resultsList.getActionMap().put("openEntry", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                openSelected();
+            }
+        });
+
+        String savedRoot = preferences.get(ROOT_PREFERENCE, null);
+        if (savedRoot != null && new File(savedRoot).isDirectory()) useRoot(new File(savedRoot));
+
+        pack();
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        super.setVisible(visible);
+        // Picks up files changed since the last scan, by this editor or anything else
+        if (visible && index != null) startUpdate();
+    }
+
+    private void onChooseFolder() {
+        JFileChooser chooser = new JFileChooser(index != null ? index.getRoot() : null);
+        chooser.setDialogTitle("Choose Library Folder");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File root = chooser.getSelectedFile();
+        preferences.put(ROOT_PREFERENCE, root.getAbsolutePath());
+        useRoot(root);
+        startUpdate();
+    }
+
+    private void useRoot(File root) {
+        if (updater != null) {
+            updater.cancel(true);
+            updater = null;
+            progressBar.setVisible(false);
+        }
+        index = new LibraryIndex(root, LibraryIndex.defaultIndexFile(root));
+        rootLabel.setText(index.getRoot().getPath());
+        rootLabel.setToolTipText(rootLabel.getText());
+        runQuery();
+    }
+
+    // Reads the saved index if nothing is loaded yet, then rescans the folder for changes.
+    private void startUpdate() {
+        if (updater != null) return;
+        LibraryIndex target = index;
+        progressBar.setValue(0);
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(true);
+        statusLabel.setText("Scanning " + target.getRoot().getName() + "...");
+        SwingWorker<LibraryIndex.UpdateResult, Void> worker = new SwingWorker<LibraryIndex.UpdateResult, Void>() {
+            @Override
+            protected LibraryIndex.UpdateResult doInBackground() throws Exception {
+                if (target.getFileCount() == 0 && target.load()) {
+                    SwingUtilities.invokeLater(() -> { if (index == target) runQuery(); });
+                }
+                return target.update(Runtime.getRuntime().availableProcessors(),
+                        (read, toRead) -> setProgress(read * 100 / toRead));
+            }
+
+            @Override
+            protected void done() {
+                if (updater == this) {
+                    updater = null;
+                    progressBar.setVisible(false);
+                }
+                if (index != target || isCancelled()) return;
+                try {
+                    LibraryIndex.UpdateResult result = get();
+                    String text = String.format("%,d files, %,d entries", result.files, result.entries);
+                    if (result.read > 0) text += String.format("; %,d read", result.read);
+                    if (result.removed > 0) text += String.format(", %,d removed", result.removed);
+                    if (result.failed > 0) text += String.format(", %,d could not be read", result.failed);
+                    statusLabel.setText(text);
+                    runQuery();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    statusLabel.setText("Could not index the folder: " + cause.getMessage());
+                }
+            }
+        };
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue((Integer) e.getNewValue());
+            }
+        });
+        updater = worker;
+        worker.execute();
+    }
+
+    private void runQuery() {
+        DefaultListModel<LibraryIndex.Hit> model = new DefaultListModel<>();
+        String text = searchField.getText();
+        if (index != null && !text.isEmpty()) {
+            List<LibraryIndex.Hit> hits = index.find(text, MAX_RESULTS);
+            Set<File> files = new HashSet<>();
+            for (LibraryIndex.Hit hit : hits) {
+                model.addElement(hit);
+                files.add(hit.file);
+            }
+            if (updater == null) {
+                statusLabel.setText(hits.size() == MAX_RESULTS
+                        ? String.format("First %,d matches", hits.size())
+                        : String.format("%,d matches in %,d files", hits.size(), files.size()));
+            }
+        }
+        resultsList.setModel(model); // Filled before it is shown, so the list is laid out once
+    }
+
+    private void openSelected() {
+        LibraryIndex.Hit hit = resultsList.getSelectedValue();
+        if (hit != null) owner.openEntry(hit.file, hit.ordinal, hit.column);
+    }
+
+    // Shows where a match is and the entry it belongs to.
+    private static class HitRenderer extends DefaultListCellRenderer {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            LibraryIndex.Hit hit = (LibraryIndex.Hit) value;
+            String text = hit.path + "  (row " + (hit.ordinal + 1) + ")  " + hit.name + "  " + hit.value;
+            return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+        }
+    }
+}
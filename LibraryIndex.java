@@ -0,0 +1,453 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An index of every .worldsmarks/.avatars file under one folder (the library), kept on disk so
+ * "which files contain this world?" is answered without opening them. Each distinct name or value
+ * is stored once; each file keeps its length, modification time and the string ids of its entries,
+ * so {@link #update} only re-reads the files whose length or time changed since the last scan.
+ *
+ * Lookups read an immutable snapshot, so they may run on the EDT while an update is in progress.
+ */
+public class LibraryIndex {
+
+    private static final int MAGIC = 0x574C4958; // "WLIX"
+    private static final int FORMAT_VERSION = 1;
+    private static final Metrics.Timer UPDATE_TIMER = Metrics.timer("library.update");
+    private static final Metrics.Timer LOOKUP_TIMER = Metrics.timer("library.lookup");
+
+    private final File root;
+    private final File indexFile;
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new FileRecord[0]);
+
+    /** Receives the progress of {@link #update}, from its worker threads. */
+    public interface ProgressListener {
+        void progress(int filesRead, int filesToRead);
+    }
+
+    /** One entry whose name or value matched a lookup. */
+    public static final class Hit {
+        public final File file;
+        public final String path; // Relative to the library root, with '/' separators
+        public final int ordinal; // Position of the entry in its file
+        public final int column; // 0 if the name matched, 1 if the value did
+        public final String name;
+        public final String value;
+
+        Hit(File file, String path, int ordinal, int column, String name, String value) {
+            this.file = file;
+            this.path = path;
+            this.ordinal = ordinal;
+            this.column = column;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    /** What an {@link #update} found. */
+    public static final class UpdateResult {
+        public final int files; // Files now in the index
+        public final int read; // Files that were new or changed and so were read
+        public final int removed; // Files that are gone since the last scan
+        public final int failed; // Files that could not be read, left out until they change
+        public final long entries;
+
+        UpdateResult(int files, int read, int removed, int failed, long entries) {
+            this.files = files;
+            this.read = read;
+            this.removed = removed;
+            this.failed = failed;
+            this.entries = entries;
+        }
+    }
+
+    // One indexed file; 'cells' holds the name and value string ids of each entry, in file order.
+    private static final class FileRecord {
+        final String path;
+        final long length;
+        final long modified;
+        final int[] cells;
+
+        FileRecord(String path, long length, long modified, int[] cells) {
+            this.path = path;
+            this.length = length;
+            this.modified = modified;
+            this.cells = cells;
+        }
+    }
+
+    // Everything a lookup needs. The occurrences of string i are [occurrenceStart[i], occurrenceStart[i + 1])
+    // in the occurrence arrays, ordered by file and then by cell.
+    private static final class Snapshot {
+        final String[] strings;
+        final FileRecord[] files; // Sorted by path
+        final String[] lowered;
+        final int[] occurrenceStart;
+        final int[] occurrenceFile;
+        final int[] occurrenceCell; // ordinal * 2 + column
+        final long entryCount;
+
+        Snapshot(String[] strings, FileRecord[] files) {
+            this.strings = strings;
+            this.files = files;
+            lowered = new String[strings.length];
+            for (int i = 0; i < strings.length; i++) {
+                lowered[i] = strings[i].toLowerCase(); // Returns the same instance if already lower case
+            }
+            occurrenceStart = new int[strings.length + 1];
+            long cells = 0;
+            for (FileRecord file : files) {
+                for (int id : file.cells) occurrenceStart[id + 1]++;
+                cells += file.cells.length;
+            }
+            for (int i = 0; i < strings.length; i++) occurrenceStart[i + 1] += occurrenceStart[i];
+            occurrenceFile = new int[(int) cells];
+            occurrenceCell = new int[(int) cells];
+            int[] next = Arrays.copyOf(occurrenceStart, strings.length);
+            for (int f = 0; f < files.length; f++) {
+                int[] fileCells = files[f].cells;
+                for (int c = 0; c < fileCells.length; c++) {
+                    int slot = next[fileCells[c]]++;
+                    occurrenceFile[slot] = f;
+                    occurrenceCell[slot] = c;
+                }
+            }
+            entryCount = cells / 2;
+        }
+    }
+
+    // Assigns ids to strings while an update builds the next snapshot; shared by the reading threads.
+    private static final class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        synchronized int[] intern(List<String> values) {
+            int[] result = new int[values.size()];
+            for (int i = 0; i < result.length; i++) result[i] = intern(values.get(i));
+            return result;
+        }
+
+        // Callers hold the lock
+        int intern(String value) {
+            Integer id = ids.get(value);
+            if (id != null) return id;
+            strings.add(value);
+            ids.put(value, strings.size() - 1);
+            return strings.size() - 1;
+        }
+
+        synchronized String[] toArray() {
+            return strings.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Creates an empty index of the files under {@code root}, stored in {@code indexFile}.
+     * Call {@link #load} to read what an earlier run saved.
+     */
+    public LibraryIndex(File root, File indexFile) {
+        this.root = root.getAbsoluteFile();
+        this.indexFile = indexFile;
+    }
+
+    /** Returns where the index of {@code root} is kept: one file per root under ~/.worldseditor. */
+    public static File defaultIndexFile(File root) {
+        String path = root.getAbsolutePath();
+        CRC32 crc = new CRC32();
+        crc.update(path.getBytes(StandardCharsets.UTF_8));
+        String name = root.getAbsoluteFile().getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        File folder = new File(System.getProperty("user.home"), ".worldseditor");
+        return new File(folder, "library-" + name + "-" + Long.toHexString(crc.getValue()) + ".idx");
+    }
+
+    public File getRoot() { return root; }
+
+    public int getFileCount() { return snapshot.files.length; }
+
+    public long getEntryCount() { return snapshot.entryCount; }
+
+    /**
+     * Reads the index saved by an earlier {@link #update}, so lookups work before the next scan.
+     * An index that is missing, from another root or version, or damaged is ignored.
+     * @return True if an index was read.
+     */
+    public boolean load() {
+        if (!indexFile.isFile()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath()), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return false;
+            StringDecoder reader = new StringDecoder(in);
+            if (!root.getPath().equals(reader.read())) return false;
+            String[] strings = new String[readVarInt(in)];
+            for (int i = 0; i < strings.length; i++) strings[i] = reader.read();
+            FileRecord[] files = new FileRecord[readVarInt(in)];
+            for (int f = 0; f < files.length; f++) {
+                String path = reader.read();
+                long length = in.readLong();
+                long modified = in.readLong();
+                int[] cells = new int[readVarInt(in) * 2];
+                for (int c = 0; c < cells.length; c++) {
+                    cells[c] = readVarInt(in);
+                    if (cells[c] >= strings.length) throw new IOException("Damaged index: string id " + cells[c]);
+                }
+                files[f] = new FileRecord(path, length, modified, cells);
+            }
+            snapshot = new Snapshot(strings, files);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring library index " + indexFile + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Brings the index up to date with the files under the root: new and changed files are read in
+     * parallel, files that are gone are dropped, and the result is saved if anything changed.
+     * @param threads How many files to read at once.
+     * @param progress Told about each file read, from the reading threads; may be null.
+     * @throws IOException If the folder cannot be walked or the index cannot be saved.
+     * @throws InterruptedException If the calling thread is interrupted; the index is left as it was.
+     */
+    public UpdateResult update(int threads, ProgressListener progress) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Path rootPath = root.toPath();
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(rootPath)) {
+            paths = walk.filter(Files::isRegularFile)
+                        .filter(path -> isBookmarkFile(path.getFileName().toString()))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+
+        Snapshot previous = snapshot;
+        Map<String, FileRecord> known = new HashMap<>();
+        for (FileRecord file : previous.files) known.put(file.path, file);
+        FileRecord[] records = new FileRecord[paths.size()];
+        String[] relativePaths = new String[paths.size()];
+        List<Integer> stale = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            File file = paths.get(i).toFile();
+            relativePaths[i] = rootPath.relativize(paths.get(i)).toString().replace(File.separatorChar, '/');
+            FileRecord record = known.remove(relativePaths[i]);
+            if (record != null && record.length == file.length() && record.modified == file.lastModified()) {
+                records[i] = record;
+            } else {
+                stale.add(i);
+            }
+        }
+        int removed = known.size();
+        if (stale.isEmpty() && removed == 0) {
+            UPDATE_TIMER.record(start);
+            return new UpdateResult(records.length, 0, 0, 0, previous.entryCount);
+        }
+
+        // Unchanged files keep their entries under new ids, so strings no file uses any more are dropped
+        StringTable table = new StringTable();
+        int[] remap = new int[previous.strings.length];
+        Arrays.fill(remap, -1);
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] == null) continue;
+            int[] cells = records[i].cells.clone();
+            for (int c = 0; c < cells.length; c++) {
+                int id = cells[c];
+                if (remap[id] == -1) remap[id] = table.intern(previous.strings[id]);
+                cells[c] = remap[id];
+            }
+            records[i] = new FileRecord(records[i].path, records[i].length, records[i].modified, cells);
+        }
+
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicBoolean stopped = new AtomicBoolean(); // Set once the update is over, so leftover tasks do nothing
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> stale.parallelStream().forEach(i -> {
+                if (stopped.get()) return;
+                File file = paths.get(i).toFile();
+                try {
+                    records[i] = readFile(file, relativePaths[i], table);
+                    bytesRead.addAndGet(records[i].length);
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    if (!stopped.get()) System.err.println(file + ": " + e);
+                }
+                if (progress != null) progress.progress(read.incrementAndGet(), stale.size());
+            })).get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            stopped.set(true);
+            pool.shutdownNow();
+        }
+
+        FileRecord[] files = Arrays.stream(records).filter(r -> r != null).toArray(FileRecord[]::new);
+        Snapshot next = new Snapshot(table.toArray(), files);
+        save(next);
+        snapshot = next;
+        UPDATE_TIMER.record(start, bytesRead.get(), next.entryCount);
+        return new UpdateResult(files.length, stale.size(), removed, failed.get(), next.entryCount);
+    }
+
+    private static FileRecord readFile(File file, String path, StringTable table) throws IOException {
+        try (BookmarkReader reader = Persister.openReader(file)) {
+            List<String> values = new ArrayList<>();
+            Persister.BookmarkEntry entry;
+            while ((entry = reader.readEntry()) != null) {
+                values.add(entry.name);
+                values.add(entry.value);
+            }
+            return new FileRecord(path, reader.getFileLength(), reader.getLastModified(), table.intern(values));
+        }
+    }
+
+    /**
+     * Returns the entries whose name or value contains {@code text}, ignoring case, ordered by
+     * file and position. At most {@code limit} are returned, taken from the first strings matched.
+     */
+    public List<Hit> find(String text, int limit) {
+        long start = System.nanoTime();
+        Snapshot s = snapshot;
+        String query = text.toLowerCase();
+        List<Hit> hits = new ArrayList<>();
+        if (query.isEmpty() || limit <= 0) return hits;
+
+        long[] found = new long[16]; // file << 32 | cell
+        int count = 0;
+        for (int i = 0; i < s.lowered.length && count < limit; i++) {
+            if (!s.lowered[i].contains(query)) continue;
+            for (int o = s.occurrenceStart[i]; o < s.occurrenceStart[i + 1] && count < limit; o++) {
+                if (count == found.length) found = Arrays.copyOf(found, Math.min(2 * count, limit));
+                found[count++] = (long) s.occurrenceFile[o] << 32 | s.occurrenceCell[o];
+            }
+        }
+        Arrays.sort(found, 0, count);
+        for (int i = 0; i < count; i++) {
+            FileRecord file = s.files[(int) (found[i] >>> 32)];
+            int cell = (int) found[i];
+            int first = cell & ~1;
+            hits.add(new Hit(new File(root, file.path.replace('/', File.separatorChar)), file.path, cell / 2, cell % 2,
+                    s.strings[file.cells[first]], s.strings[file.cells[first + 1]]));
+        }
+        LOOKUP_TIMER.record(start, 0, count);
+        return hits;
+    }
+
+    // --- Storage ---
+
+    // Writes a temp file next to the index, then moves it into place.
+    private void save(Snapshot s) throws IOException {
+        Path target = indexFile.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                StringEncoder writer = new StringEncoder(out);
+                writer.write(root.getPath());
+                writeVarInt(out, s.strings.length);
+                for (String string : s.strings) writer.write(string);
+                writeVarInt(out, s.files.length);
+                for (FileRecord file : s.files) {
+                    writer.write(file.path);
+                    out.writeLong(file.length);
+                    out.writeLong(file.modified);
+                    writeVarInt(out, file.cells.length / 2);
+                    for (int id : file.cells) writeVarInt(out, id);
+                }
+            }
+            Persister.moveIntoPlace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // Strings are stored as a varint byte length followed by modified UTF-8, which keeps unpaired
+    // surrogates intact and has no 64 KB limit.
+    private static final class StringEncoder {
+        private final DataOutputStream out;
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        StringEncoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(String s) throws IOException {
+            int length = ModifiedUtf8.encodedLength(s);
+            if (buffer.capacity() < length) buffer = ByteBuffer.allocate(Math.max(length, 2 * buffer.capacity()));
+            buffer.clear();
+            ModifiedUtf8.encodeBody(s, buffer);
+            writeVarInt(out, length);
+            out.write(buffer.array(), 0, length);
+        }
+    }
+
+    private static final class StringDecoder {
+        private final DataInputStream in;
+        private ByteBuffer buffer = ByteBuffer.allocate(256);
+        private char[] scratch = new char[256];
+
+        StringDecoder(DataInputStream in) {
+            this.in = in;
+        }
+
+        String read() throws IOException {
+            int length = readVarInt(in);
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(Math.max(length, 2 * buffer.capacity()));
+                scratch = new char[buffer.capacity()];
+            }
+            in.readFully(buffer.array(), 0, length);
+            buffer.clear();
+            return ModifiedUtf8.decode(buffer, length, scratch);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) throw new IOException("Damaged index: negative length");
+                return value;
+            }
+        }
+        throw new IOException("Damaged index: varint too long");
+    }
+
+    private static boolean isBookmarkFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".worldsmarks") || lower.endsWith(".avatars");
+    }
+}
@@ -0,0 +1,219 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide timings of loading, saving and searching, plus the EDT stalls seen by
+ * {@link EdtWatchdog}, published over JMX as "WorldsEditor:type=Metrics" so they can be read
+ * with jconsole while the editor runs.
+ *
+ * Recording a sample is a handful of uncontended atomic adds into a fixed set of buckets;
+ * percentiles and summaries are only computed when the bean is read.
+ */
+public class Metrics {
+
+    public static final String OBJECT_NAME = "WorldsEditor:type=Metrics";
+    private static final int MAX_STALL_REPORTS = 20;
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final ArrayDeque<String> stallReports = new ArrayDeque<>();
+
+    private Metrics() {
+    }
+
+    /** The management interface shown in jconsole. */
+    public interface MetricsMXBean {
+        /** Summaries of every timer, by name. */
+        Map<String, TimingSummary> getTimings();
+
+        /** The latest EDT stalls, newest first, each with the EDT's stack trace while it was blocked. */
+        List<String> getEdtStalls();
+
+        /** Clears all timings and stall reports. */
+        void reset();
+    }
+
+    /** A read-only view of one timer, as shown over JMX. Durations are in milliseconds. */
+    public static final class TimingSummary {
+        private final long count, bytes, entries;
+        private final double meanMillis, p50Millis, p90Millis, p99Millis, maxMillis;
+
+        @ConstructorProperties({"count", "bytes", "entries", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis"})
+        public TimingSummary(long count, long bytes, long entries, double meanMillis,
+                             double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.bytes = bytes;
+            this.entries = entries;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p90Millis = p90Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() { return count; }
+        public long getBytes() { return bytes; }
+        public long getEntries() { return entries; }
+        public double getMeanMillis() { return meanMillis; }
+        public double getP50Millis() { return p50Millis; }
+        public double getP90Millis() { return p90Millis; }
+        public double getP99Millis() { return p99Millis; }
+        public double getMaxMillis() { return maxMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms bytes=%d entries=%d",
+                    count, meanMillis, p50Millis, p90Millis, p99Millis, maxMillis, bytes, entries);
+        }
+    }
+
+    /**
+     * A histogram of durations with the bytes and entries they processed. Buckets are powers of two
+     * of nanoseconds split into four, so a percentile is exact to within about 20%.
+     */
+    public static final class Timer {
+        private static final int SUB_BUCKETS = 4;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder entries = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Timer() {
+        }
+
+        /** Records the time since {@code startNanos}, a value of System.nanoTime(). */
+        public void record(long startNanos) {
+            record(startNanos, 0, 0);
+        }
+
+        /** Records the time since {@code startNanos} along with the amount of data it covered. */
+        public void record(long startNanos, long byteCount, long entryCount) {
+            recordNanos(System.nanoTime() - startNanos, byteCount, entryCount);
+        }
+
+        /** Records a duration measured by the caller. */
+        public void recordNanos(long nanos, long byteCount, long entryCount) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            if (byteCount != 0) bytes.add(byteCount);
+            if (entryCount != 0) entries.add(entryCount);
+        }
+
+        TimingSummary summarize() {
+            long n = count.sum();
+            if (n == 0) return new TimingSummary(0, 0, 0, 0, 0, 0, 0, 0);
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long max = maxNanos.get();
+            return new TimingSummary(n, bytes.sum(), entries.sum(), millis(totalNanos.sum() / n),
+                    millis(Math.min(max, percentile(counts, total, 0.50))), millis(Math.min(max, percentile(counts, total, 0.90))),
+                    millis(Math.min(max, percentile(counts, total, 0.99))), millis(max));
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.reset();
+            totalNanos.reset();
+            bytes.reset();
+            entries.reset();
+            maxNanos.reset();
+        }
+
+        private static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int fraction = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return exponent * SUB_BUCKETS + fraction;
+        }
+
+        // Upper edge of the bucket holding the given fraction of the samples.
+        private static long percentile(long[] counts, long total, double fraction) {
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) return upperBound(i);
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS;
+            long step = 1L << (exponent - 2);
+            return (1L << exponent) + (bucket % SUB_BUCKETS + 1) * step - 1;
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    /** Returns the timer with the given name, creating it on first use. */
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /** Publishes the metrics on the platform MBean server, once per process. */
+    public static synchronized void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already published
+        } catch (JMException e) {
+            System.err.println("Metrics are not available over JMX: " + e);
+        }
+    }
+
+    static void addStallReport(String report) {
+        synchronized (stallReports) {
+            if (stallReports.size() == MAX_STALL_REPORTS) stallReports.removeLast();
+            stallReports.addFirst(report);
+        }
+    }
+
+    private static class Bean implements MetricsMXBean {
+        @Override
+        public Map<String, TimingSummary> getTimings() {
+            Map<String, TimingSummary> summaries = new TreeMap<>();
+            timers.forEach((name, timer) -> summaries.put(name, timer.summarize()));
+            return summaries;
+        }
+
+        @Override
+        public List<String> getEdtStalls() {
+            synchronized (stallReports) {
+                return Collections.unmodifiableList(new ArrayList<>(stallReports));
+            }
+        }
+
+        @Override
+        public void reset() {
+            timers.values().forEach(Timer::reset);
+            synchronized (stallReports) {
+                stallReports.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * Modified UTF-8 codec, byte-compatible with DataInputStream.readUTF / DataOutputStream.writeUTF.
+ */
+final class ModifiedUtf8 {
+
+    private ModifiedUtf8() { }
+
+    /**
+     * Decodes {@code length} bytes starting at the buffer's current position and advances past them.
+     * @param buffer The source buffer; must hold at least {@code length} remaining bytes.
+     * @param length The encoded length, as read from the 2-byte prefix.
+     * @param scratch A char array of at least {@code length} chars, reused across calls.
+     * @throws UTFDataFormatException If the bytes are not valid modified UTF-8.
+     */
+    static String decode(ByteBuffer buffer, int length, char[] scratch) throws UTFDataFormatException {
+        int count = decodeChars(buffer, length, scratch);
+        return new String(scratch, 0, count);
+    }
+
+    /**
+     * Like {@link #decode}, but only fills {@code scratch} and returns the number of chars,
+     * which also serves to validate encoded bytes without creating a String.
+     */
+    static int decodeChars(ByteBuffer buffer, int length, char[] scratch) throws UTFDataFormatException {
+        int start = buffer.position();
+        int end = start + length;
+        int pos = start;
+        int count = 0;
+
+        // Fast path: plain ASCII, which is almost every name and URL in these files.
+        while (pos < end) {
+            int c = buffer.get(pos) & 0xFF;
+            if (c > 0x7F) break;
+            scratch[count++] = (char) c;
+            pos++;
+        }
+
+        while (pos < end) {
+            int c = buffer.get(pos) & 0xFF;
+            switch (c >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+                    pos++;
+                    scratch[count++] = (char) c;
+                    break;
+                case 12: case 13: {
+                    if (pos + 2 > end) throw new UTFDataFormatException("malformed input: partial character at end");
+                    int c2 = buffer.get(pos + 1);
+                    if ((c2 & 0xC0) != 0x80) throw new UTFDataFormatException("malformed input around byte " + (pos - start));
+                    scratch[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+                    pos += 2;
+                    break;
+                }
+                case 14: {
+                    if (pos + 3 > end) throw new UTFDataFormatException("malformed input: partial character at end");
+                    int c2 = buffer.get(pos + 1);
+                    int c3 = buffer.get(pos + 2);
+                    if (((c2 & 0xC0) != 0x80) || ((c3 & 0xC0) != 0x80)) {
+                        throw new UTFDataFormatException("malformed input around byte " + (pos - start));
+                    }
+                    scratch[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+                    pos += 3;
+                    break;
+                }
+                default:
+                    throw new UTFDataFormatException("malformed input around byte " + (pos - start));
+            }
+        }
+        buffer.position(end);
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes writeUTF would produce for {@code s}, excluding the 2-byte length prefix.
+     */
+    static int encodedLength(String s) {
+        int length = s.length();
+        int utfLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || c == 0) {
+                utfLength += (c >= 0x800) ? 2 : 1;
+            }
+        }
+        return utfLength;
+    }
+
+    /**
+     * Writes the 2-byte length prefix and the encoded bytes of {@code s} at the buffer's position.
+     * @param buffer The destination; must have room for {@code 2 + utfLength} bytes.
+     * @param utfLength The value returned by {@link #encodedLength(String)}.
+     * @throws UTFDataFormatException If the encoded string does not fit in 65535 bytes.
+     */
+    static void encode(String s, int utfLength, ByteBuffer buffer) throws UTFDataFormatException {
+        if (utfLength > 65535) {
+            throw new UTFDataFormatException("encoded string too long: " + utfLength + " bytes");
+        }
+        buffer.putShort((short) utfLength);
+        encodeBody(s, buffer);
+    }
+
+    /**
+     * Writes the encoded bytes of {@code s} without a length prefix or size limit.
+     * @param buffer The destination; must have room for {@link #encodedLength(String)} bytes.
+     */
+    static void encodeBody(String s, ByteBuffer buffer) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c != 0 && c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c >= 0x800) {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
@@ -0,0 +1,567 @@
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A compact list of bookmark entries. Every name and value is kept as modified UTF-8 bytes in
+ * one growable byte arena, referenced by int offset/length pairs, and Strings are only decoded
+ * when an entry is read. Optionally, identical strings (e.g. the same avatar URL on many rows)
+ * are stored once.
+ *
+ * get() returns a fresh BookmarkEntry on every call, so assigning its fields does not change
+ * the list; use set() instead. Like ArrayList, this class is not thread-safe.
+ */
+public class PackedEntryList extends AbstractList<Persister.BookmarkEntry> implements RandomAccess {
+
+    // Arena holding the encoded bytes of every stored string, back to back.
+    private byte[] arena;
+    private int arenaSize;
+
+    // String table: string id -> slice of the arena. Id 0 is always the empty string.
+    private int[] stringOffsets;
+    private int[] stringLengths;
+    private int stringCount;
+
+    // Entry table: one slot per entry, in list order.
+    private int[] nameIds;
+    private int[] valueIds;
+    private long[] recordOffsets; // -1 if the entry does not match a record of the source file
+    private int[] recordLengths;
+    private int[] recordIndexes;
+    private int size;
+
+    // Open-addressing table of (string id + 1), or null when deduplication is off.
+    private int[] dedupSlots;
+    // True while the string table is shared with the list this one is a snapshot of.
+    private boolean sharedStrings;
+
+    private char[] scratch = new char[256];
+
+    public PackedEntryList() {
+        this(16, true);
+    }
+
+    /**
+     * @param initialCapacity The number of entries to size the tables for.
+     * @param deduplicate Whether identical strings should share their bytes in the arena.
+     */
+    public PackedEntryList(int initialCapacity, boolean deduplicate) {
+        this(initialCapacity, initialCapacity * 32, deduplicate);
+    }
+
+    /**
+     * @param initialCapacity The number of entries to size the tables for.
+     * @param initialArenaBytes The expected number of encoded string bytes, e.g. the file length.
+     * @param deduplicate Whether identical strings should share their bytes in the arena.
+     */
+    public PackedEntryList(int initialCapacity, int initialArenaBytes, boolean deduplicate) {
+        int capacity = Math.max(initialCapacity, 4);
+        arena = new byte[Math.max(initialArenaBytes, 1024)];
+        stringOffsets = new int[2 * capacity + 1];
+        stringLengths = new int[2 * capacity + 1];
+        stringCount = 1; // Id 0: ""
+        nameIds = new int[capacity];
+        valueIds = new int[capacity];
+        recordOffsets = new long[capacity];
+        recordLengths = new int[capacity];
+        recordIndexes = new int[capacity];
+        if (deduplicate) {
+            dedupSlots = new int[Integer.highestOneBit(Math.max(4 * capacity, 16) - 1) << 1];
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Persister.BookmarkEntry get(int index) {
+        checkIndex(index, size);
+        Persister.BookmarkEntry entry = new Persister.BookmarkEntry(decode(nameIds[index]), decode(valueIds[index]));
+        if (recordOffsets[index] >= 0) {
+            entry.bindRecord(recordOffsets[index], recordLengths[index], recordIndexes[index]);
+        }
+        return entry;
+    }
+
+    /** Returns the name at {@code index} without materializing the entry. */
+    public String getName(int index) {
+        checkIndex(index, size);
+        return decode(nameIds[index]);
+    }
+
+    /** Returns the value at {@code index} without materializing the entry. */
+    public String getValue(int index) {
+        checkIndex(index, size);
+        return decode(valueIds[index]);
+    }
+
+    @Override
+    public Persister.BookmarkEntry set(int index, Persister.BookmarkEntry entry) {
+        Persister.BookmarkEntry previous = get(index);
+        store(index, entry);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Persister.BookmarkEntry entry) {
+        checkIndex(index, size + 1);
+        ensureEntryCapacity(size + 1);
+        shift(index, index + 1, size - index);
+        size++;
+        modCount++;
+        store(index, entry);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Persister.BookmarkEntry> entries) {
+        checkIndex(index, size + 1);
+        int count = entries.size();
+        ensureEntryCapacity(size + count);
+        shift(index, index + count, size - index);
+        size += count;
+        modCount++;
+        int i = index;
+        for (Persister.BookmarkEntry entry : entries) {
+            store(i++, entry);
+        }
+        return count > 0;
+    }
+
+    /** Appends every entry of another packed list, copying the encoded bytes without decoding them. */
+    public void appendAll(PackedEntryList other) {
+        ensureEntryCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            nameIds[size] = copyString(other, other.nameIds[i]);
+            valueIds[size] = copyString(other, other.valueIds[i]);
+            recordOffsets[size] = other.recordOffsets[i];
+            recordLengths[size] = other.recordLengths[i];
+            recordIndexes[size] = other.recordIndexes[i];
+            size++;
+        }
+        modCount++;
+    }
+
+    /**
+     * Moves the entries start..end (inclusive) so that the one at {@code start} ends up at
+     * {@code to}, with the same meaning as DefaultTableModel.moveRow. Only ids are moved.
+     */
+    public void moveRange(int start, int end, int to) {
+        int count = end - start + 1;
+        if (start < 0 || end >= size || count <= 0 || to < 0 || to + count > size) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", to " + to + ", size " + size);
+        }
+        if (to == start) return;
+        moveBlock(nameIds, start, count, to);
+        moveBlock(valueIds, start, count, to);
+        moveBlock(recordLengths, start, count, to);
+        moveBlock(recordIndexes, start, count, to);
+        long[] block = Arrays.copyOfRange(recordOffsets, start, start + count);
+        if (to < start) {
+            System.arraycopy(recordOffsets, to, recordOffsets, to + count, start - to);
+        } else {
+            System.arraycopy(recordOffsets, start + count, recordOffsets, start, to - start);
+        }
+        System.arraycopy(block, 0, recordOffsets, to, count);
+        modCount++;
+    }
+
+    /** Returns a new list holding copies of the entries at the given indexes, bytes included. */
+    public PackedEntryList extract(int[] indexes) {
+        PackedEntryList copy = new PackedEntryList(indexes.length, indexes.length * 32, dedupSlots != null);
+        for (int index : indexes) {
+            checkIndex(index, size);
+            copy.nameIds[copy.size] = copy.copyString(this, nameIds[index]);
+            copy.valueIds[copy.size] = copy.copyString(this, valueIds[index]);
+            copy.recordOffsets[copy.size] = recordOffsets[index];
+            copy.recordLengths[copy.size] = recordLengths[index];
+            copy.recordIndexes[copy.size] = recordIndexes[index];
+            copy.size++;
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the current entries that shares this list's string arena, so only the
+     * entry tables are copied (24 bytes per entry). Strings are never changed in place, so later
+     * edits to either list do not affect the other; the copy takes its own arena on first write.
+     */
+    public PackedEntryList snapshot() {
+        PackedEntryList copy = new PackedEntryList(this);
+        copy.nameIds = Arrays.copyOf(nameIds, size);
+        copy.valueIds = Arrays.copyOf(valueIds, size);
+        copy.recordOffsets = Arrays.copyOf(recordOffsets, size);
+        copy.recordLengths = Arrays.copyOf(recordLengths, size);
+        copy.recordIndexes = Arrays.copyOf(recordIndexes, size);
+        copy.size = size;
+        return copy;
+    }
+
+    // Shares the string table of 'source' as it is now; see snapshot().
+    private PackedEntryList(PackedEntryList source) {
+        arena = source.arena;
+        arenaSize = source.arenaSize;
+        stringOffsets = source.stringOffsets;
+        stringLengths = source.stringLengths;
+        stringCount = source.stringCount;
+        dedupSlots = source.dedupSlots;
+        sharedStrings = true;
+    }
+
+    /**
+     * Replaces several ranges in one pass: range i, the {@code counts[i]} entries at
+     * {@code starts[i]} (ascending, not overlapping, numbered as before the call), is replaced by
+     * the next {@code lengths[i]} entries of {@code replacements}. The entries between the ranges
+     * are moved once however many ranges there are, and entries of a packed list are copied as bytes.
+     */
+    public void replaceRanges(int[] starts, int[] counts, List<Persister.BookmarkEntry> replacements, int[] lengths) {
+        int newSize = size;
+        int previousEnd = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] < previousEnd || starts[i] + counts[i] > size) {
+                throw new IndexOutOfBoundsException("range " + starts[i] + "+" + counts[i] + ", size " + size);
+            }
+            previousEnd = starts[i] + counts[i];
+            newSize += lengths[i] - counts[i];
+        }
+        int[] oldNames = nameIds, oldValues = valueIds, oldLengths = recordLengths, oldIndexes = recordIndexes;
+        long[] oldOffsets = recordOffsets;
+        int capacity = Math.max(newSize, 4);
+        nameIds = new int[capacity];
+        valueIds = new int[capacity];
+        recordOffsets = new long[capacity];
+        recordLengths = new int[capacity];
+        recordIndexes = new int[capacity];
+
+        PackedEntryList packed = replacements instanceof PackedEntryList ? (PackedEntryList) replacements : null;
+        int from = 0;
+        int out = 0;
+        int next = 0; // Next entry of replacements
+        for (int i = 0; i <= starts.length; i++) {
+            int to = i < starts.length ? starts[i] : size;
+            System.arraycopy(oldNames, from, nameIds, out, to - from);
+            System.arraycopy(oldValues, from, valueIds, out, to - from);
+            System.arraycopy(oldOffsets, from, recordOffsets, out, to - from);
+            System.arraycopy(oldLengths, from, recordLengths, out, to - from);
+            System.arraycopy(oldIndexes, from, recordIndexes, out, to - from);
+            out += to - from;
+            if (i == starts.length) break;
+            for (int j = 0; j < lengths[i]; j++, next++, out++) {
+                if (packed == null) {
+                    store(out, replacements.get(next));
+                    continue;
+                }
+                nameIds[out] = copyString(packed, packed.nameIds[next]);
+                valueIds[out] = copyString(packed, packed.valueIds[next]);
+                recordOffsets[out] = packed.recordOffsets[next];
+                recordLengths[out] = packed.recordLengths[next];
+                recordIndexes[out] = packed.recordIndexes[next];
+            }
+            from = starts[i] + counts[i];
+        }
+        size = newSize;
+        modCount++;
+    }
+
+    /**
+     * Reorders the entries from..from+order.length-1 so that position {@code from + i} receives
+     * the entry previously at {@code from + order[i]}. Only ids are moved.
+     */
+    public void permute(int from, int[] order) {
+        int count = order.length;
+        if (from < 0 || from + count > size) {
+            throw new IndexOutOfBoundsException("from " + from + ", count " + count + ", size " + size);
+        }
+        int[] names = Arrays.copyOfRange(nameIds, from, from + count);
+        int[] values = Arrays.copyOfRange(valueIds, from, from + count);
+        long[] offsets = Arrays.copyOfRange(recordOffsets, from, from + count);
+        int[] lengths = Arrays.copyOfRange(recordLengths, from, from + count);
+        int[] indexes = Arrays.copyOfRange(recordIndexes, from, from + count);
+        for (int i = 0; i < count; i++) {
+            int j = order[i];
+            nameIds[from + i] = names[j];
+            valueIds[from + i] = values[j];
+            recordOffsets[from + i] = offsets[j];
+            recordLengths[from + i] = lengths[j];
+            recordIndexes[from + i] = indexes[j];
+        }
+        modCount++;
+    }
+
+    /**
+     * Removes the entries at the given indexes in one pass, shifting each surviving run once.
+     * The indexes must be distinct and sorted ascending.
+     */
+    public void removeIndexes(int[] sortedIndexes) {
+        if (sortedIndexes.length == 0) return;
+        if (sortedIndexes[0] < 0 || sortedIndexes[sortedIndexes.length - 1] >= size) {
+            throw new IndexOutOfBoundsException("indexes " + sortedIndexes[0] + ".." + sortedIndexes[sortedIndexes.length - 1] + ", size " + size);
+        }
+        int kept = sortedIndexes[0];
+        for (int r = 0; r < sortedIndexes.length; r++) {
+            int runStart = sortedIndexes[r] + 1;
+            int runEnd = r + 1 < sortedIndexes.length ? sortedIndexes[r + 1] : size;
+            shift(runStart, kept, runEnd - runStart);
+            kept += runEnd - runStart;
+        }
+        size = kept;
+        modCount++;
+    }
+
+    @Override
+    public Persister.BookmarkEntry remove(int index) {
+        Persister.BookmarkEntry previous = get(index);
+        removeRange(index, index + 1);
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("from " + fromIndex + " to " + toIndex + ", size " + size);
+        }
+        shift(toIndex, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    /** Releases unused capacity in the arena and tables, e.g. once loading is complete. */
+    public void trimToSize() {
+        arena = Arrays.copyOf(arena, arenaSize);
+        stringOffsets = Arrays.copyOf(stringOffsets, stringCount);
+        stringLengths = Arrays.copyOf(stringLengths, stringCount);
+        nameIds = Arrays.copyOf(nameIds, size);
+        valueIds = Arrays.copyOf(valueIds, size);
+        recordOffsets = Arrays.copyOf(recordOffsets, size);
+        recordLengths = Arrays.copyOf(recordLengths, size);
+        recordIndexes = Arrays.copyOf(recordIndexes, size);
+    }
+
+    /** Returns the number of bytes used in the string arena, including bytes of removed strings. */
+    public int getArenaSize() {
+        return arenaSize;
+    }
+
+    // --- Package-private hooks for BookmarkReader and Persister ---
+
+    /** Stores the encoded bytes between the buffer's position and limit; returns the string id. */
+    int addString(ByteBuffer encoded) {
+        int length = encoded.remaining();
+        if (length == 0) return 0;
+        ensureArenaCapacity(length);
+        encoded.get(arena, arenaSize, length);
+        return commitString(length);
+    }
+
+    /** Appends an entry that matches a record of the source file. */
+    void addRecord(int nameId, int valueId, long recordOffset, int recordLength, int recordIndex) {
+        ensureEntryCapacity(size + 1);
+        nameIds[size] = nameId;
+        valueIds[size] = valueId;
+        recordOffsets[size] = recordOffset;
+        recordLengths[size] = recordLength;
+        recordIndexes[size] = recordIndex;
+        size++;
+        modCount++;
+    }
+
+    /** Points every entry at the record written for it at position i; see Persister.saveToFile. */
+    void bindRecords(long[] offsets) {
+        for (int i = 0; i < size; i++) {
+            recordOffsets[i] = offsets[i];
+            recordLengths[i] = (int) (offsets[i + 1] - offsets[i]);
+            recordIndexes[i] = i;
+        }
+    }
+
+    /** Marks every entry as not matching a record, e.g. for entries copied from another file's list. */
+    void unbindRecords() {
+        Arrays.fill(recordOffsets, 0, size, -1);
+    }
+
+    /** Hash of the entry's encoded name and value, consistent with entryEquals across lists. */
+    int entryHash(int index) {
+        return 31 * hash(stringOffsets[nameIds[index]], stringLengths[nameIds[index]])
+                + hash(stringOffsets[valueIds[index]], stringLengths[valueIds[index]]);
+    }
+
+    /** Compares the encoded name and value of two entries, possibly of different lists, without decoding them. */
+    boolean entryEquals(int index, PackedEntryList other, int otherIndex) {
+        return stringEquals(nameIds[index], other, other.nameIds[otherIndex])
+                && stringEquals(valueIds[index], other, other.valueIds[otherIndex]);
+    }
+
+    // --- Internals ---
+
+    private boolean stringEquals(int id, PackedEntryList other, int otherId) {
+        if (other == this && id == otherId) return true;
+        int length = stringLengths[id];
+        if (length != other.stringLengths[otherId]) return false;
+        int a = stringOffsets[id];
+        int b = other.stringOffsets[otherId];
+        for (int i = 0; i < length; i++) {
+            if (arena[a + i] != other.arena[b + i]) return false;
+        }
+        return true;
+    }
+
+    private void store(int index, Persister.BookmarkEntry entry) {
+        nameIds[index] = addString(entry.name);
+        valueIds[index] = addString(entry.value);
+        if (entry.isUnchanged()) {
+            recordOffsets[index] = entry.recordOffset;
+            recordLengths[index] = entry.recordLength;
+            recordIndexes[index] = entry.recordIndex;
+        } else {
+            recordOffsets[index] = -1;
+        }
+    }
+
+    private int copyString(PackedEntryList other, int id) {
+        int length = other.stringLengths[id];
+        if (length == 0) return 0;
+        ensureArenaCapacity(length);
+        System.arraycopy(other.arena, other.stringOffsets[id], arena, arenaSize, length);
+        return commitString(length);
+    }
+
+    private int addString(String s) {
+        if (s == null || s.isEmpty()) return 0;
+        int length = ModifiedUtf8.encodedLength(s);
+        ensureArenaCapacity(length);
+        ModifiedUtf8.encodeBody(s, ByteBuffer.wrap(arena, arenaSize, length));
+        return commitString(length);
+    }
+
+    // Registers the bytes just written at arenaSize as a string, or reuses an identical one.
+    private int commitString(int length) {
+        int offset = arenaSize;
+        int slot = -1;
+        if (dedupSlots != null) {
+            int mask = dedupSlots.length - 1;
+            slot = hash(offset, length) & mask;
+            while (dedupSlots[slot] != 0) {
+                int id = dedupSlots[slot] - 1;
+                if (stringLengths[id] == length && rangeEquals(stringOffsets[id], offset, length)) {
+                    return id; // Duplicate: the bytes just written are simply not kept
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        if (stringCount == stringOffsets.length) {
+            int newLength = stringOffsets.length + (stringOffsets.length >> 1) + 1;
+            stringOffsets = Arrays.copyOf(stringOffsets, newLength);
+            stringLengths = Arrays.copyOf(stringLengths, newLength);
+        }
+        int id = stringCount++;
+        stringOffsets[id] = offset;
+        stringLengths[id] = length;
+        arenaSize += length;
+        if (dedupSlots != null) {
+            dedupSlots[slot] = id + 1;
+            if (2 * stringCount > dedupSlots.length) rehash();
+        }
+        return id;
+    }
+
+    private String decode(int id) {
+        int length = stringLengths[id];
+        if (length == 0) return "";
+        if (scratch.length < length) scratch = new char[Math.max(length, 2 * scratch.length)];
+        try {
+            return ModifiedUtf8.decode(ByteBuffer.wrap(arena, stringOffsets[id], length), length, scratch);
+        } catch (UTFDataFormatException e) {
+            throw new UncheckedIOException(e); // Bytes are validated on the way in, so this means corruption
+        }
+    }
+
+    private int hash(int offset, int length) {
+        int h = length;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + arena[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean rangeEquals(int a, int b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (arena[a + i] != arena[b + i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int[] slots = new int[dedupSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 1; id < stringCount; id++) {
+            int slot = hash(stringOffsets[id], stringLengths[id]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+        dedupSlots = slots;
+    }
+
+    private static void moveBlock(int[] array, int start, int count, int to) {
+        int[] block = Arrays.copyOfRange(array, start, start + count);
+        if (to < start) {
+            System.arraycopy(array, to, array, to + count, start - to);
+        } else {
+            System.arraycopy(array, start + count, array, start, to - start);
+        }
+        System.arraycopy(block, 0, array, to, count);
+    }
+
+    private void shift(int from, int to, int count) {
+        System.arraycopy(nameIds, from, nameIds, to, count);
+        System.arraycopy(valueIds, from, valueIds, to, count);
+        System.arraycopy(recordOffsets, from, recordOffsets, to, count);
+        System.arraycopy(recordLengths, from, recordLengths, to, count);
+        System.arraycopy(recordIndexes, from, recordIndexes, to, count);
+    }
+
+    private void ensureEntryCapacity(int capacity) {
+        if (capacity <= nameIds.length) return;
+        int newLength = Math.max(capacity, nameIds.length + (nameIds.length >> 1));
+        nameIds = Arrays.copyOf(nameIds, newLength);
+        valueIds = Arrays.copyOf(valueIds, newLength);
+        recordOffsets = Arrays.copyOf(recordOffsets, newLength);
+        recordLengths = Arrays.copyOf(recordLengths, newLength);
+        recordIndexes = Arrays.copyOf(recordIndexes, newLength);
+    }
+
+    private void ensureArenaCapacity(int extra) {
+        if (sharedStrings) unshareStrings();
+        long required = (long) arenaSize + extra;
+        if (required <= arena.length) return;
+        if (required > Integer.MAX_VALUE - 8) throw new OutOfMemoryError("Entry arena exceeds 2 GB");
+        arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * arena.length)));
+    }
+
+    // Takes private copies of a snapshot's string table before its first write, dropping the
+    // strings the other list added since.
+    private void unshareStrings() {
+        arena = Arrays.copyOf(arena, Math.max(arenaSize, 1024));
+        stringOffsets = Arrays.copyOf(stringOffsets, Math.max(stringCount, 16));
+        stringLengths = Arrays.copyOf(stringLengths, Math.max(stringCount, 16));
+        sharedStrings = false;
+        if (dedupSlots != null) rehash();
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+        }
+    }
+}
@@ -1,19 +1,59 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.JSONWriter;
 
 /**
  * The format is specific and requires precise byte-level operations.
  */
 public class Persister {
 
+    // Read over JMX; see Metrics
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("loadFromFile");
+    private static final Metrics.Timer LOAD_CHANNEL_TIMER = Metrics.timer("loadFromFileChannel");
+    private static final Metrics.Timer LOAD_PACKED_TIMER = Metrics.timer("loadFromFilePacked");
+    private static final Metrics.Timer SAVE_TIMER = Metrics.timer("saveToFile");
+
     // Represents a single entry in the bookmark list.
     public static class BookmarkEntry {
         public String name;
         public String value;
+        // Where this entry's record was decoded from (see BookmarkData.sourceFile); -1 if built in memory.
+        long recordOffset = -1;
+        int recordLength, recordIndex;
+        String loadedName, loadedValue;
+
         public BookmarkEntry(String name, String value) { this.name = name; this.value = value; }
+
+        void bindRecord(long offset, int length, int index) {
+            this.recordOffset = offset;
+            this.recordLength = length;
+            this.recordIndex = index;
+            this.loadedName = name;
+            this.loadedValue = value;
+        }
+
+        // True if the source record bytes still encode this entry when written at position 'index'.
+        boolean isUnchangedAt(int index) {
+            return recordIndex == index && isUnchanged();
+        }
+
+        // True if this entry still matches the record it was decoded from, wherever it is written.
+        boolean isUnchanged() {
+            return recordOffset >= 0 && name != null && value != null
+                    && name.equals(loadedName) && value.equals(loadedValue);
+        }
     }
 
     // Represents the entire content of a bookmark file.
@@ -21,11 +61,44 @@ public class Persister {
         public String type;
         public int version;
         public List<BookmarkEntry> entries;
+        public int extraInt = 459;
+        public int objectID = 8782;
+
+        // Set when the header metadata above was decoded from (or written to) a file.
+        boolean hasHeaderMetadata;
+        // The file the entries' record offsets refer to, and its state when they were recorded.
+        File sourceFile;
+        long sourceLength, sourceModified;
+        int sourceObjectID;
+
         public BookmarkData(String type, int version, List<BookmarkEntry> entries) {
             this.type = type;
             this.version = version;
             this.entries = entries;
         }
+
+        /**
+         * Returns a copy of this data with a different entry list, keeping the header
+         * metadata and source file so the copy can still be saved incrementally.
+         */
+        public BookmarkData withEntries(List<BookmarkEntry> newEntries) {
+            BookmarkData copy = new BookmarkData(type, version, newEntries);
+            copy.extraInt = extraInt;
+            copy.objectID = objectID;
+            copy.hasHeaderMetadata = hasHeaderMetadata;
+            copy.sourceFile = sourceFile;
+            copy.sourceLength = sourceLength;
+            copy.sourceModified = sourceModified;
+            copy.sourceObjectID = sourceObjectID;
+            return copy;
+        }
+
+        void bindSource(File file, long length, long modified, int fileObjectID) {
+            this.sourceFile = file;
+            this.sourceLength = length;
+            this.sourceModified = modified;
+            this.sourceObjectID = fileObjectID;
+        }
     }
 
     // Holds metadata from a reference file for writing.
@@ -41,6 +114,7 @@ public class Persister {
      * @throws IOException If the file format is invalid or a read error occurs.
      */
     public static BookmarkData loadFromFile(File sourceFile) throws IOException {
+        long start = System.nanoTime();
         try (DataInputStream inputStream = new DataInputStream(new FileInputStream(sourceFile))) {
             String magicHeader = readString(inputStream);
             if (!"PERSISTER Worlds, Inc.".equals(magicHeader)) {
@@ -68,66 +142,298 @@ public class Persister {
             }
             readString(inputStream); // Read "END PERSISTER"
 
+            LOAD_TIMER.record(start, sourceFile.length(), entryCount);
             return new BookmarkData(typeIdentifier, fileVersion, entryList);
         }
     }
 
+    /**
+     * Loads a file like {@link #loadFromFile(File)}, but decodes it from a FileChannel
+     * read in large chunks rather than field by field through a DataInputStream.
+     * @param sourceFile The binary file to read.
+     * @return A BookmarkData object containing the file's content.
+     * @throws IOException If the file format is invalid or a read error occurs.
+     */
+    public static BookmarkData loadFromFileChannel(File sourceFile) throws IOException {
+        long start = System.nanoTime();
+        try (BookmarkReader reader = openReader(sourceFile)) {
+            List<BookmarkEntry> entryList = new ArrayList<>(Math.max(0, Math.min(reader.getEntryCount(), 1 << 20)));
+            BookmarkEntry entry;
+            while ((entry = reader.readEntry()) != null) {
+                entryList.add(entry);
+            }
+            BookmarkData data = new BookmarkData(reader.getType(), reader.getVersion(), entryList);
+            data.extraInt = reader.getExtraInt();
+            data.objectID = reader.getObjectID();
+            data.hasHeaderMetadata = true;
+            data.bindSource(sourceFile, reader.getFileLength(), reader.getLastModified(), reader.getObjectID());
+            LOAD_CHANNEL_TIMER.record(start, reader.getFileLength(), entryList.size());
+            return data;
+        }
+    }
+
+    /**
+     * Loads a file into a {@link PackedEntryList}, which keeps names and values as encoded bytes
+     * in a single arena (repeated values stored once) and only decodes them when read.
+     * @param sourceFile The binary file to read.
+     * @return A BookmarkData object whose entries list is a PackedEntryList.
+     * @throws IOException If the file format is invalid or a read error occurs.
+     */
+    public static BookmarkData loadFromFilePacked(File sourceFile) throws IOException {
+        long start = System.nanoTime();
+        try (BookmarkReader reader = openReader(sourceFile)) {
+            int arenaHint = (int) Math.min(reader.getFileLength(), 1 << 30); // Strings are most of the file
+            PackedEntryList entryList = new PackedEntryList(Math.max(0, Math.min(reader.getEntryCount(), 1 << 20)), arenaHint, true);
+            while (reader.readEntryInto(entryList)) {
+                // Entries are appended by the reader
+            }
+            entryList.trimToSize();
+            BookmarkData data = new BookmarkData(reader.getType(), reader.getVersion(), entryList);
+            data.extraInt = reader.getExtraInt();
+            data.objectID = reader.getObjectID();
+            data.hasHeaderMetadata = true;
+            data.bindSource(sourceFile, reader.getFileLength(), reader.getLastModified(), reader.getObjectID());
+            LOAD_PACKED_TIMER.record(start, reader.getFileLength(), entryList.size());
+            return data;
+        }
+    }
+
+    /**
+     * Opens a file for one-pass, constant-memory reading of its entries.
+     * @param sourceFile The binary file to read.
+     * @return A reader positioned after the header; the caller must close it.
+     * @throws IOException If the header is invalid or a read error occurs.
+     */
+    public static BookmarkReader openReader(File sourceFile) throws IOException {
+        return new BookmarkReader(sourceFile);
+    }
+
+    /**
+     * Creates a file that is written one entry at a time; the entry count is filled in on close.
+     * @param destinationFile The file to be created/overwritten.
+     * @param type The type identifier to store in the header.
+     * @param version The file version.
+     * @return A writer; the caller must close it to produce a valid file.
+     * @throws IOException If a write error occurs.
+     */
+    public static BookmarkWriter openWriter(File destinationFile, String type, int version) throws IOException {
+        return new BookmarkWriter(destinationFile, type, version);
+    }
+
     /**
      * Encodes and writes data to a binary .worldsmarks or .avatars file.
+     * If the entries were loaded with {@link #loadFromFileChannel(File)} and that file is unchanged
+     * on disk, records that were neither edited nor moved are copied from it byte for byte and
+     * only the rest is re-encoded. Afterwards the entries refer to the newly written file.
      * @param destinationFile The file to be created/overwritten.
      * @param content The data to write.
      * @param referenceFile An optional original file to preserve metadata from.
      * @throws IOException If a write error occurs.
      */
     public static void saveToFile(File destinationFile, BookmarkData content, File referenceFile) throws IOException {
+        long start = System.nanoTime();
         ReferenceMetadata metadata = getMetadataToWrite(content, referenceFile);
+        long[] recordOffsets = new long[content.entries.size() + 1];
+
+        if (canSplice(content, metadata)) {
+            spliceToFile(destinationFile, content, metadata, recordOffsets);
+        } else {
+            encodeToFile(destinationFile, content, metadata, recordOffsets);
+        }
+        rebindSource(destinationFile, content, metadata, recordOffsets);
+        SAVE_TIMER.record(start, content.sourceLength, content.entries.size());
+    }
+
+    // --- Pre-sized Encoding ---
+
+    // Upper bound for the encode buffer; larger files are written in several chunks of this size.
+    private static final int MAX_ENCODE_BUFFER = 32 * 1024 * 1024;
+
+    // Sizes the whole file exactly before writing anything, so an oversize string fails the save
+    // without touching disk, then encodes into one buffer and writes it to a temp file in one go.
+    private static void encodeToFile(File destinationFile, BookmarkData content, ReferenceMetadata meta, long[] recordOffsets) throws IOException {
+        List<BookmarkEntry> entries = content.entries;
+        String typeText = meta.typeText == null ? "" : meta.typeText;
+        int[] stringSizes = new int[2 * entries.size()];
 
-        try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(destinationFile))) {
-            writeHeader(outputStream, metadata, content.entries.size());
-            writeAllEntries(outputStream, content.entries, metadata.objectID);
-            writeFooter(outputStream);
+        long totalSize = sizeOfString("PERSISTER Worlds, Inc.", "Header") + 16 + sizeOfString(typeText, "Type identifier");
+        for (int i = 0; i < entries.size(); i++) {
+            BookmarkEntry entry = entries.get(i);
+            recordOffsets[i] = totalSize;
+            stringSizes[2 * i] = sizeOfString(entry.name, "Name of entry " + (i + 1));
+            stringSizes[2 * i + 1] = sizeOfString(entry.value, "Value of entry " + (i + 1));
+            totalSize += (i == 0 ? 4 : 8) + stringSizes[2 * i] + stringSizes[2 * i + 1];
+        }
+        recordOffsets[entries.size()] = totalSize;
+        totalSize += sizeOfString("END PERSISTER", "Footer");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(totalSize, MAX_ENCODE_BUFFER));
+        Path target = destinationFile.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                putString(buffer, "PERSISTER Worlds, Inc.", sizeOfString("PERSISTER Worlds, Inc.", "Header"));
+                buffer.putInt(meta.version);
+                buffer.putInt(entries.size());
+                buffer.putInt(meta.extraInt);
+                buffer.putInt(meta.objectID);
+                putString(buffer, typeText, sizeOfString(typeText, "Type identifier"));
+                for (int i = 0; i < entries.size(); i++) {
+                    int recordSize = (int) (recordOffsets[i + 1] - recordOffsets[i]);
+                    if (buffer.remaining() < recordSize) drain(buffer, out);
+                    if (i == 0) {
+                        buffer.putInt(1);
+                    } else {
+                        buffer.putInt(460 + i);
+                        buffer.putInt(meta.objectID);
+                    }
+                    BookmarkEntry entry = entries.get(i);
+                    putString(buffer, entry.name, stringSizes[2 * i]);
+                    putString(buffer, entry.value, stringSizes[2 * i + 1]);
+                }
+                if (buffer.remaining() < 16) drain(buffer, out);
+                putString(buffer, "END PERSISTER", sizeOfString("END PERSISTER", "Footer"));
+                drain(buffer, out);
+                out.force(false);
+            }
+            moveIntoPlace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
         }
     }
 
-    // --- Private Helper Methods for Writing ---
+    // Encoded size of a string as written by writeString: the flag byte, plus 2 + UTF length if not empty.
+    private static int sizeOfString(String s, String description) throws UTFDataFormatException {
+        if (s == null || s.isEmpty()) return 1;
+        int utfLength = ModifiedUtf8.encodedLength(s);
+        if (utfLength > 65535) {
+            throw new UTFDataFormatException(description + " is too long: " + utfLength + " bytes encoded, the limit is 65535");
+        }
+        return 3 + utfLength;
+    }
 
-    private static void writeHeader(DataOutputStream dos, ReferenceMetadata meta, int entryCount) throws IOException {
-        writeString(dos, "PERSISTER Worlds, Inc.");
-        dos.writeInt(meta.version);
-        dos.writeInt(entryCount);
-        dos.writeInt(meta.extraInt);
-        dos.writeInt(meta.objectID);
-        writeString(dos, meta.typeText == null ? "" : meta.typeText);
+    private static void putString(ByteBuffer buffer, String s, int encodedSize) throws UTFDataFormatException {
+        if (encodedSize == 1) {
+            buffer.put((byte) 1);
+        } else {
+            buffer.put((byte) 0);
+            ModifiedUtf8.encode(s, encodedSize - 3, buffer);
+        }
     }
 
-    private static void writeAllEntries(DataOutputStream dos, List<BookmarkEntry> entries, int objectID) throws IOException {
-        int i = 0;
-        while (i < entries.size()) {
-            if (i == 0) {
-                dos.writeInt(1);
-            } else {
-                dos.writeInt(460 + i);
-                dos.writeInt(objectID);
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // --- Splice Saving ---
+
+    private static boolean canSplice(BookmarkData content, ReferenceMetadata meta) {
+        File source = content.sourceFile;
+        if (source == null || meta.objectID != content.sourceObjectID) return false;
+        return source.isFile() && source.length() == content.sourceLength && source.lastModified() == content.sourceModified;
+    }
+
+    // Copies runs of unchanged records straight from the source file and re-encodes the rest.
+    // Writes to a temporary file first, because the destination may be the source itself.
+    private static void spliceToFile(File destinationFile, BookmarkData content, ReferenceMetadata meta, long[] recordOffsets) throws IOException {
+        Path target = destinationFile.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel source = FileChannel.open(content.sourceFile.toPath(), StandardOpenOption.READ);
+                 ChannelWriter out = new ChannelWriter(FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                List<BookmarkEntry> entries = content.entries;
+                writeHeader(out, meta, entries.size());
+                int i = 0;
+                while (i < entries.size()) {
+                    BookmarkEntry first = entries.get(i);
+                    if (!first.isUnchangedAt(i)) {
+                        recordOffsets[i] = out.position();
+                        writeRecord(out, i, first, meta.objectID);
+                        i++;
+                        continue;
+                    }
+                    int runEnd = i + 1;
+                    while (runEnd < entries.size() && entries.get(runEnd).isUnchangedAt(runEnd)) runEnd++;
+                    BookmarkEntry last = entries.get(runEnd - 1);
+                    long base = out.position();
+                    for (int k = i; k < runEnd; k++) {
+                        recordOffsets[k] = base + (entries.get(k).recordOffset - first.recordOffset);
+                    }
+                    out.transferFrom(source, first.recordOffset, last.recordOffset + last.recordLength - first.recordOffset);
+                    i = runEnd;
+                }
+                recordOffsets[entries.size()] = out.position();
+                out.writeString("END PERSISTER");
             }
-            BookmarkEntry currentEntry = entries.get(i);
-            writeString(dos, currentEntry.name);
-            writeString(dos, currentEntry.value);
-            i++;
+            moveIntoPlace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
         }
     }
-    
-    private static void writeFooter(DataOutputStream dos) throws IOException {
-        writeString(dos, "END PERSISTER");
+
+    static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Points the content and its entries at the file just written, so the next save can splice from it.
+    private static void rebindSource(File file, BookmarkData content, ReferenceMetadata meta, long[] recordOffsets) {
+        List<BookmarkEntry> entries = content.entries;
+        if (entries instanceof PackedEntryList) {
+            // Its get() returns fresh objects, so the offsets must be stored in the list itself
+            ((PackedEntryList) entries).bindRecords(recordOffsets);
+        } else {
+            for (int i = 0; i < entries.size(); i++) {
+                entries.get(i).bindRecord(recordOffsets[i], (int) (recordOffsets[i + 1] - recordOffsets[i]), i);
+            }
+        }
+        content.version = meta.version;
+        content.extraInt = meta.extraInt;
+        content.objectID = meta.objectID;
+        content.hasHeaderMetadata = true;
+        content.bindSource(file, file.length(), file.lastModified(), meta.objectID);
+    }
+
+    // --- Private Helper Methods for Writing ---
+
+    private static void writeHeader(ChannelWriter out, ReferenceMetadata meta, int entryCount) throws IOException {
+        out.writeString("PERSISTER Worlds, Inc.");
+        out.writeInt(meta.version);
+        out.writeInt(entryCount);
+        out.writeInt(meta.extraInt);
+        out.writeInt(meta.objectID);
+        out.writeString(meta.typeText == null ? "" : meta.typeText);
+    }
+
+    private static void writeRecord(ChannelWriter out, int index, BookmarkEntry entry, int objectID) throws IOException {
+        if (index == 0) {
+            out.writeInt(1);
+        } else {
+            out.writeInt(460 + index);
+            out.writeInt(objectID);
+        }
+        out.writeString(entry.name);
+        out.writeString(entry.value);
     }
 
     private static ReferenceMetadata getMetadataToWrite(BookmarkData data, File referenceFile) throws IOException {
         ReferenceMetadata meta = new ReferenceMetadata();
         meta.version = data.version;
         meta.typeText = data.type;
-        meta.extraInt = 459; // Default
-        meta.objectID = 8782; // Default
+        meta.extraInt = data.extraInt; // 459 unless loaded from a file
+        meta.objectID = data.objectID; // 8782 unless loaded from a file
 
-        if (referenceFile != null && referenceFile.exists()) {
+        // Metadata decoded at load time wins; the reference file is only re-read for data built in memory.
+        if (!data.hasHeaderMetadata && referenceFile != null && referenceFile.exists()) {
             ReferenceMetadata refMeta = readReferenceMetadata(referenceFile);
             meta.version = refMeta.version;
             meta.extraInt = refMeta.extraInt;
@@ -139,6 +445,303 @@ public class Persister {
         return meta;
     }
 
+    // --- JSON Import/Export ---
+
+    /**
+     * Converts a binary file to JSON one entry at a time, so memory use does not grow with the file.
+     * The header fields are written first, then an "entries" array of {"name", "value"} objects.
+     * @param sourceFile The binary file to read.
+     * @param jsonFile The JSON file to be created/overwritten.
+     * @return The number of entries exported.
+     * @throws IOException If the source is invalid or a read/write error occurs.
+     */
+    public static int exportToJson(File sourceFile, File jsonFile) throws IOException {
+        Path target = jsonFile.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            int count = 0;
+            try (BookmarkReader reader = new BookmarkReader(sourceFile);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8), 64 * 1024)) {
+                JSONWriter json = beginJson(out, reader.getType(), reader.getVersion(),
+                        reader.getExtraInt(), reader.getObjectID(), reader.getEntryCount());
+                for (BookmarkEntry entry = reader.readEntry(); entry != null; entry = reader.readEntry()) {
+                    writeJsonEntry(json, entry);
+                    count++;
+                }
+                endJson(json);
+            }
+            moveIntoPlace(temp, target);
+            return count;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes data already in memory as JSON, in the same layout as {@link #exportToJson(File, File)}.
+     * @param content The data to write.
+     * @param out The destination; it is flushed but not closed.
+     * @throws IOException If a write error occurs.
+     */
+    public static void exportToJson(BookmarkData content, Writer out) throws IOException {
+        JSONWriter json = beginJson(out, content.type, content.version, content.extraInt, content.objectID, content.entries.size());
+        for (BookmarkEntry entry : content.entries) {
+            writeJsonEntry(json, entry);
+        }
+        endJson(json);
+        out.flush();
+    }
+
+    /**
+     * Converts a JSON export back to a binary file one entry at a time. A file exported from a
+     * canonically encoded binary file converts back to identical bytes.
+     * @param jsonFile The JSON file to read.
+     * @param destinationFile The binary file to be created/overwritten.
+     * @return The number of entries imported.
+     * @throws IOException If the JSON is invalid or a read/write error occurs.
+     */
+    public static int importFromJson(File jsonFile, File destinationFile) throws IOException {
+        Path target = destinationFile.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        JsonFileSink sink = new JsonFileSink(temp.toFile());
+        try {
+            int count;
+            try (Reader in = new InputStreamReader(new FileInputStream(jsonFile), StandardCharsets.UTF_8)) {
+                count = readJson(in, sink);
+            }
+            sink.close();
+            moveIntoPlace(temp, target);
+            return count;
+        } catch (IOException | RuntimeException e) {
+            sink.abandon();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a JSON export into memory, e.g. to edit it or pass it to {@link #saveToFile}.
+     * @param jsonFile The JSON file to read.
+     * @return A BookmarkData object carrying the exported header metadata.
+     * @throws IOException If the JSON is invalid or a read error occurs.
+     */
+    public static BookmarkData loadFromJson(File jsonFile) throws IOException {
+        BookmarkData data = new BookmarkData(null, 0, new ArrayList<>());
+        try (Reader in = new InputStreamReader(new FileInputStream(jsonFile), StandardCharsets.UTF_8)) {
+            readJson(in, new JsonEntrySink() {
+                @Override
+                public void begin(String type, int version, int extraInt, int objectID) {
+                    data.type = type;
+                    data.version = version;
+                    data.extraInt = extraInt;
+                    data.objectID = objectID;
+                    data.hasHeaderMetadata = true;
+                }
+
+                @Override
+                public void entry(BookmarkEntry entry) {
+                    data.entries.add(entry);
+                }
+            });
+        }
+        return data;
+    }
+
+    // Receives the header once it is complete, then each entry in order.
+    private interface JsonEntrySink {
+        void begin(String type, int version, int extraInt, int objectID) throws IOException;
+        void entry(BookmarkEntry entry) throws IOException;
+    }
+
+    // Streams imported entries straight into a BookmarkWriter.
+    private static class JsonFileSink implements JsonEntrySink {
+        private final File file;
+        private BookmarkWriter writer;
+
+        JsonFileSink(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void begin(String type, int version, int extraInt, int objectID) throws IOException {
+            writer = new BookmarkWriter(file, type, version, extraInt, objectID);
+        }
+
+        @Override
+        public void entry(BookmarkEntry entry) throws IOException {
+            writer.write(entry);
+        }
+
+        void close() throws IOException {
+            writer.close();
+        }
+
+        void abandon() {
+            try {
+                if (writer != null) writer.close();
+            } catch (IOException ignored) { /* The partial file is deleted anyway */ }
+        }
+    }
+
+    private static JSONWriter beginJson(Writer out, String type, int version, int extraInt, int objectID, int entryCount) throws IOException {
+        try {
+            return new JSONWriter(new SurrogateEscapingWriter(out)).object()
+                    .key("format").value("PERSISTER Worlds, Inc.")
+                    .key("type").value(type == null ? "" : type)
+                    .key("version").value(version)
+                    .key("extraInt").value(extraInt)
+                    .key("objectID").value(objectID)
+                    .key("entryCount").value(entryCount)
+                    .key("entries").array();
+        } catch (JSONException e) {
+            throw jsonFailure(e);
+        }
+    }
+
+    private static void writeJsonEntry(JSONWriter json, BookmarkEntry entry) throws IOException {
+        try {
+            json.object().key("name").value(entry.name).key("value").value(entry.value).endObject();
+        } catch (JSONException e) {
+            throw jsonFailure(e);
+        }
+    }
+
+    private static void endJson(JSONWriter json) throws IOException {
+        try {
+            json.endArray().endObject();
+        } catch (JSONException e) {
+            throw jsonFailure(e);
+        }
+    }
+
+    // Parses the top-level object field by field; only one entry object is materialized at a time.
+    // Header fields must precede "entries", which is how exportToJson writes them.
+    private static int readJson(Reader in, JsonEntrySink sink) throws IOException {
+        JSONTokener x = new JSONTokener(in);
+        String type = null;
+        Integer version = null;
+        int extraInt = 459, objectID = 8782, expectedCount = -1, count = 0;
+        boolean begun = false;
+        try {
+            if (x.nextClean() != '{') throw x.syntaxError("A JSON export must begin with '{'");
+            for (char c = x.nextClean(); c != '}'; ) {
+                x.back();
+                String key = x.nextValue().toString();
+                if (x.nextClean() != ':') throw x.syntaxError("Expected ':' after \"" + key + "\"");
+                if ("entries".equals(key)) {
+                    if (type == null || version == null) {
+                        throw new IOException("Invalid JSON export: \"type\" and \"version\" must come before \"entries\"");
+                    }
+                    sink.begin(type, version, extraInt, objectID);
+                    begun = true;
+                    count = readJsonEntries(x, sink);
+                } else {
+                    Object value = x.nextValue();
+                    switch (key) {
+                        case "type": type = value.toString(); break;
+                        case "version": version = jsonInt(key, value); break;
+                        case "extraInt": extraInt = jsonInt(key, value); break;
+                        case "objectID": objectID = jsonInt(key, value); break;
+                        case "entryCount": expectedCount = jsonInt(key, value); break;
+                        default: break; // "format" and unknown fields are informational
+                    }
+                }
+                c = x.nextClean();
+                if (c == ',') {
+                    c = x.nextClean();
+                } else if (c != '}') {
+                    throw x.syntaxError("Expected ',' or '}'");
+                }
+            }
+        } catch (JSONException e) {
+            throw jsonFailure(e);
+        }
+        if (!begun) {
+            if (type == null || version == null) throw new IOException("Invalid JSON export: missing \"type\" or \"version\"");
+            sink.begin(type, version, extraInt, objectID);
+        }
+        if (expectedCount >= 0 && expectedCount != count) {
+            throw new IOException("Invalid JSON export: entryCount=" + expectedCount + " but " + count + " entries found");
+        }
+        return count;
+    }
+
+    private static int readJsonEntries(JSONTokener x, JsonEntrySink sink) throws IOException {
+        if (x.nextClean() != '[') throw x.syntaxError("\"entries\" must be an array");
+        int count = 0;
+        for (char c = x.nextClean(); c != ']'; ) {
+            x.back();
+            Object value = x.nextValue();
+            if (!(value instanceof JSONObject)) throw x.syntaxError("Entry " + count + " is not an object");
+            JSONObject entry = (JSONObject) value;
+            sink.entry(new BookmarkEntry(entry.getString("name"), entry.getString("value")));
+            count++;
+            c = x.nextClean();
+            if (c == ',') {
+                c = x.nextClean();
+            } else if (c != ']') {
+                throw x.syntaxError("Expected ',' or ']'");
+            }
+        }
+        return count;
+    }
+
+    private static int jsonInt(String key, Object value) throws IOException {
+        if (!(value instanceof Number)) throw new IOException("Invalid JSON export: \"" + key + "\" must be a number");
+        return ((Number) value).intValue();
+    }
+
+    // JSONWriter reports I/O failures of the underlying writer as JSONException.
+    private static IOException jsonFailure(JSONException e) {
+        if (e.getCause() instanceof IOException) return (IOException) e.getCause();
+        return new IOException("Invalid JSON export: " + e.getMessage(), e);
+    }
+
+    // Writes surrogate chars as JSON unicode escapes. Modified UTF-8 can hold unpaired surrogates, which a
+    // UTF-8 writer would replace with '?'; escaped, they survive the round trip. They only occur
+    // inside JSON strings, so escaping them there is always valid.
+    private static class SurrogateEscapingWriter extends FilterWriter {
+        SurrogateEscapingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (Character.isSurrogate((char) c)) {
+                out.write(String.format("\\u%04x", c));
+            } else {
+                out.write(c);
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (Character.isSurrogate(cbuf[i])) {
+                    out.write(cbuf, start, i - start);
+                    write(cbuf[i]);
+                    start = i + 1;
+                }
+            }
+            out.write(cbuf, start, off + len - start);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (Character.isSurrogate(str.charAt(i))) {
+                    out.write(str, start, i - start);
+                    write(str.charAt(i));
+                    start = i + 1;
+                }
+            }
+            out.write(str, start, off + len - start);
+        }
+    }
+
     // --- Low-level Binary I/O ---
     
     private static String readString(DataInputStream dis) throws IOException {
@@ -146,16 +749,6 @@ public class Persister {
         return isEmpty ? "" : dis.readUTF();
     }
 
-    private static void writeString(DataOutputStream dos, String s) throws IOException {
-        if (s == null) s = "";
-        if (!s.isEmpty()) {
-            dos.writeBoolean(false);
-            dos.writeUTF(s);
-        } else {
-            dos.writeBoolean(true);
-        }
-    }
-    
     private static ReferenceMetadata readReferenceMetadata(File refFile) throws IOException {
         ReferenceMetadata meta = new ReferenceMetadata();
         try (DataInputStream dis = new DataInputStream(new FileInputStream(refFile))) {
@@ -0,0 +1,333 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a copy of every tab with unsaved edits on disk, so the edits survive a crash. Each running
+ * editor writes to its own session folder under {@code ~/.worldseditor/recovery}, held by a file
+ * lock; a folder whose lock is free on startup was left by an editor that did not exit cleanly,
+ * and its tabs can be restored.
+ *
+ * A tab is kept as a .worldsmarks/.avatars file plus a small properties file naming the file it
+ * belongs to. Copies are written by one background thread. A tab with a copy still waiting to be
+ * written only has its newest copy written, and {@link #getWriteInterval()} grows with the time
+ * writes take, so the cost of the journal stays bounded however fast the tabs are edited.
+ */
+public class RecoveryJournal {
+
+    private static final Metrics.Timer WRITE_TIMER = Metrics.timer("recovery.write");
+    private static final String LOCK_FILE = "session.lock";
+    private static final long MIN_INTERVAL_MILLIS = 5000;
+    // Writes may take at most 1/WRITE_SHARE of the writer thread's time
+    private static final int WRITE_SHARE = 5;
+
+    private final File folder;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "recovery-writer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final AtomicLong lastWriteNanos = new AtomicLong();
+
+    /** A tab's place in the journal. */
+    public final class Slot {
+        private final int id = nextSlot.incrementAndGet();
+        private Copy pending; // Newest copy not yet written; guarded by the slot
+        private boolean removed;
+
+        private File dataFile(String fileType) {
+            return new File(folder, "tab-" + id + fileType);
+        }
+
+        private File infoFile() {
+            return new File(folder, "tab-" + id + ".info");
+        }
+    }
+
+    // A tab as it was when a copy was asked for.
+    private static final class Copy {
+        final File originalFile;
+        final String fileType;
+        final Persister.BookmarkData content;
+
+        Copy(File originalFile, String fileType, Persister.BookmarkData content) {
+            this.originalFile = originalFile;
+            this.fileType = fileType;
+            this.content = content;
+        }
+    }
+
+    /** A tab restored from a session that did not exit cleanly. */
+    public static final class Recovered {
+        public final File originalFile; // Null for a list that was never saved
+        public final String fileType;
+        public final long savedAt;
+        public final Persister.BookmarkData data;
+
+        Recovered(File originalFile, String fileType, long savedAt, Persister.BookmarkData data) {
+            this.originalFile = originalFile;
+            this.fileType = fileType;
+            this.savedAt = savedAt;
+            this.data = data;
+        }
+    }
+
+    /** The sessions left by editors that did not exit cleanly, locked until discarded or released. */
+    public static final class Abandoned {
+        public final List<Recovered> tabs = new ArrayList<>();
+        private final List<File> folders = new ArrayList<>();
+        private final List<FileChannel> locks = new ArrayList<>();
+
+        /** Deletes the sessions, once their tabs have been restored or are not wanted. */
+        public void discard() {
+            release();
+            for (File folder : folders) deleteFolder(folder);
+        }
+
+        /** Leaves the sessions on disk, to be offered again on the next start. */
+        public void release() {
+            for (FileChannel channel : locks) {
+                try {
+                    channel.close(); // Releases its lock
+                } catch (IOException e) {
+                    // Nothing holds it any more either way
+                }
+            }
+            locks.clear();
+        }
+    }
+
+    /** Returns the folder the sessions are kept in, {@code ~/.worldseditor/recovery}. */
+    public static File defaultFolder() {
+        return new File(new File(System.getProperty("user.home"), ".worldseditor"), "recovery");
+    }
+
+    /**
+     * Starts a new session in {@code root}.
+     * @throws IOException If the session folder cannot be created or locked.
+     */
+    public RecoveryJournal(File root) throws IOException {
+        folder = new File(root, "session-" + System.currentTimeMillis() + "-" + Long.toHexString(System.nanoTime() & 0xFFFFFF));
+        Files.createDirectories(folder.toPath());
+        lockChannel = FileChannel.open(new File(folder, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired = lockChannel.tryLock();
+        if (acquired == null) {
+            lockChannel.close();
+            throw new IOException("Cannot lock " + folder);
+        }
+        lock = acquired;
+    }
+
+    /** Returns a new, empty place for a tab. */
+    public Slot newSlot() {
+        return new Slot();
+    }
+
+    /** Returns how long to wait between copies of the same tab, at least 5 seconds. */
+    public long getWriteInterval() {
+        return Math.max(MIN_INTERVAL_MILLIS, TimeUnit.NANOSECONDS.toMillis(lastWriteNanos.get() * WRITE_SHARE));
+    }
+
+    /**
+     * Queues a copy of a tab to be written, replacing any earlier copy of it still waiting.
+     * @param originalFile The file the tab was opened from or saved to, or null.
+     * @param fileType ".worldsmarks" or ".avatars".
+     * @param content The tab's data, over entries that are not changed afterwards, e.g. a snapshot.
+     */
+    public void write(Slot slot, File originalFile, String fileType, Persister.BookmarkData content) {
+        Copy copy = new Copy(originalFile, fileType, content);
+        synchronized (slot) {
+            boolean queued = slot.pending != null;
+            slot.pending = copy;
+            slot.removed = false;
+            if (queued) return; // The queued task writes the newest copy
+        }
+        writer.execute(() -> writePending(slot));
+    }
+
+    /** Forgets a tab once it is saved or closed, after any copy of it still being written. */
+    public void remove(Slot slot) {
+        synchronized (slot) {
+            slot.pending = null;
+            slot.removed = true;
+        }
+        writer.execute(() -> {
+            synchronized (slot) {
+                if (!slot.removed) return; // Written again since
+            }
+            deleteSlotFiles(slot);
+        });
+    }
+
+    /** Deletes abandoned sessions once the copies queued so far are written, e.g. of the tabs restored from them. */
+    public void discardAfterWrites(Abandoned abandoned) {
+        writer.execute(abandoned::discard);
+    }
+
+    /** Ends the session cleanly: waits for pending writes, then deletes the session folder. */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            // The folder is deleted below regardless
+        }
+        deleteFolder(folder);
+    }
+
+    private void writePending(Slot slot) {
+        Copy copy;
+        synchronized (slot) {
+            copy = slot.pending;
+            slot.pending = null;
+        }
+        if (copy == null) return; // Removed before it was written
+        long start = System.nanoTime();
+        File dataFile = slot.dataFile(copy.fileType);
+        try {
+            Path temp = Files.createTempFile(folder.toPath(), dataFile.getName(), ".tmp");
+            Persister.BookmarkData content = copy.content;
+            try {
+                try (BookmarkWriter out = new BookmarkWriter(temp.toFile(), content.type, content.version, content.extraInt, content.objectID)) {
+                    for (Persister.BookmarkEntry entry : content.entries) out.write(entry);
+                }
+                Persister.moveIntoPlace(temp, dataFile.toPath());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Properties info = new Properties();
+            info.setProperty("data", dataFile.getName());
+            info.setProperty("original", copy.originalFile == null ? "" : copy.originalFile.getAbsolutePath());
+            info.setProperty("type", copy.fileType);
+            info.setProperty("saved", Long.toString(System.currentTimeMillis()));
+            Path infoTemp = Files.createTempFile(folder.toPath(), slot.infoFile().getName(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(infoTemp)) {
+                info.store(out, null);
+            }
+            Persister.moveIntoPlace(infoTemp, slot.infoFile().toPath());
+            WRITE_TIMER.record(start, dataFile.length(), content.entries.size());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cannot write the recovery copy " + dataFile + ": " + e);
+        } finally {
+            lastWriteNanos.set(System.nanoTime() - start);
+        }
+        synchronized (slot) {
+            if (slot.removed) deleteSlotFiles(slot); // Saved or closed while it was being written
+        }
+    }
+
+    private void deleteSlotFiles(Slot slot) {
+        try {
+            Files.deleteIfExists(slot.infoFile().toPath());
+            Files.deleteIfExists(slot.dataFile(".worldsmarks").toPath());
+            Files.deleteIfExists(slot.dataFile(".avatars").toPath());
+        } catch (IOException e) {
+            System.err.println("Cannot delete the recovery copy of tab " + slot.id + ": " + e);
+        }
+    }
+
+    // --- Recovery ---
+
+    /**
+     * Finds the sessions under {@code root} that no running editor holds and reads their tabs.
+     * Sessions without tabs are deleted right away. Slow for large tabs; call it off the EDT.
+     */
+    public static Abandoned findAbandoned(File root) {
+        Abandoned abandoned = new Abandoned();
+        File[] sessions = root.listFiles(file -> file.isDirectory() && file.getName().startsWith("session-"));
+        if (sessions == null) return abandoned;
+        for (File session : sessions) {
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(new File(session, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                if (channel.tryLock() == null) {
+                    channel.close(); // Still running
+                    continue;
+                }
+            } catch (IOException | OverlappingFileLockException e) {
+                closeQuietly(channel); // Ours, or not ours to touch
+                continue;
+            }
+            List<Recovered> tabs = readSession(session);
+            if (tabs.isEmpty()) {
+                closeQuietly(channel);
+                deleteFolder(session);
+                continue;
+            }
+            abandoned.tabs.addAll(tabs);
+            abandoned.folders.add(session);
+            abandoned.locks.add(channel);
+        }
+        abandoned.tabs.sort((a, b) -> Long.compare(a.savedAt, b.savedAt));
+        return abandoned;
+    }
+
+    private static List<Recovered> readSession(File session) {
+        List<Recovered> tabs = new ArrayList<>();
+        File[] infoFiles = session.listFiles(file -> file.getName().endsWith(".info"));
+        if (infoFiles == null) return tabs;
+        for (File infoFile : infoFiles) {
+            try {
+                Properties info = new Properties();
+                try (InputStream in = Files.newInputStream(infoFile.toPath())) {
+                    info.load(in);
+                }
+                Persister.BookmarkData data = Persister.loadFromFilePacked(new File(session, info.getProperty("data", "")));
+                // The copy is deleted once restored, so nothing may be spliced from it
+                ((PackedEntryList) data.entries).unbindRecords();
+                data.bindSource(null, 0, 0, 0);
+                String original = info.getProperty("original", "");
+                tabs.add(new Recovered(original.isEmpty() ? null : new File(original), info.getProperty("type", ".worldsmarks"),
+                        Long.parseLong(info.getProperty("saved", "0")), data));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Cannot read the recovery copy " + infoFile + ": " + e);
+            }
+        }
+        return tabs;
+    }
+
+    private static void deleteFolder(File folder) {
+        try (Stream<Path> files = Files.list(folder.toPath())) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            Files.deleteIfExists(folder.toPath());
+        } catch (IOException e) {
+            System.err.println("Cannot delete " + folder + ": " + e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Only held a lock
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import javax.swing.JComponent;
+import javax.swing.JTable;
+import javax.swing.TransferHandler;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copy, cut, paste and drag-and-drop of whole rows for one tab's table. Rows travel as
+ * tab-separated "name<TAB>value" lines, so they can be exchanged with spreadsheets and text
+ * editors. Dragging rows within the same table moves them as one block; every operation is
+ * applied to the model as a single change.
+ */
+public class RowTransferHandler extends TransferHandler {
+
+    private final JTable table;
+    private final BookmarkTableModel model;
+    private final TransferHandler fileHandler; // Receives dropped files, as outside the table
+    private int[] exportedRows; // Model rows of the drag or cut in progress
+    private boolean cutting;
+
+    public RowTransferHandler(JTable table, BookmarkTableModel model, TransferHandler fileHandler) {
+        this.table = table;
+        this.model = model;
+        this.fileHandler = fileHandler;
+    }
+
+    @Override
+    public int getSourceActions(JComponent c) {
+        return COPY_OR_MOVE;
+    }
+
+    @Override
+    protected Transferable createTransferable(JComponent c) {
+        int[] viewRows = table.getSelectedRows();
+        if (viewRows.length == 0) return null;
+        exportedRows = new int[viewRows.length];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < viewRows.length; i++) {
+            int row = table.convertRowIndexToModel(viewRows[i]);
+            exportedRows[i] = row;
+            text.append(model.getValueAt(row, 0)).append('\t').append(model.getValueAt(row, 1)).append('\n');
+        }
+        return new StringSelection(text.toString());
+    }
+
+    @Override
+    public void exportToClipboard(JComponent comp, Clipboard clip, int action) throws IllegalStateException {
+        cutting = action == MOVE;
+        try {
+            super.exportToClipboard(comp, clip, action);
+        } finally {
+            cutting = false;
+        }
+    }
+
+    @Override
+    protected void exportDone(JComponent source, Transferable data, int action) {
+        // A drag within the table already moved the rows in importData; only a cut removes them here
+        if (cutting && action == MOVE && exportedRows != null) {
+            model.removeRows(exportedRows);
+            table.clearSelection();
+        }
+        exportedRows = null;
+    }
+
+    @Override
+    public boolean canImport(TransferSupport support) {
+        if (support.isDataFlavorSupported(DataFlavor.javaFileListFlavor)) {
+            return fileHandler != null && fileHandler.canImport(support);
+        }
+        // Rows dragged within a sorted table would only fall back into their sorted places
+        if (support.isDrop() && exportedRows != null && isSorted()) return false;
+        return table.isEnabled() && support.isDataFlavorSupported(DataFlavor.stringFlavor);
+    }
+
+    @Override
+    public boolean importData(TransferSupport support) {
+        if (!canImport(support)) return false;
+        if (support.isDataFlavorSupported(DataFlavor.javaFileListFlavor)) {
+            return fileHandler.importData(support);
+        }
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+
+        int insertAt = insertionRow(support);
+        if (support.isDrop() && exportedRows != null) {
+            selectModelRows(model.moveRowsTo(exportedRows, insertAt), exportedRows.length);
+            return true;
+        }
+        List<Persister.BookmarkEntry> entries;
+        try {
+            entries = parseRows((String) support.getTransferable().getTransferData(DataFlavor.stringFlavor));
+        } catch (UnsupportedFlavorException | IOException e) {
+            return false;
+        }
+        if (entries.isEmpty()) return false;
+        model.insertRows(insertAt, entries);
+        selectModelRows(insertAt, entries.size());
+        return true;
+    }
+
+    private boolean isSorted() {
+        return table.getRowSorter() != null && !table.getRowSorter().getSortKeys().isEmpty();
+    }
+
+    /** Parses "name<TAB>value" lines; a line without a tab becomes a name with an empty value. */
+    static List<Persister.BookmarkEntry> parseRows(String text) {
+        List<Persister.BookmarkEntry> entries = new ArrayList<>();
+        for (String line : text.split("\r\n|\r|\n")) {
+            if (line.isEmpty()) continue;
+            int tab = line.indexOf('\t');
+            entries.add(tab < 0
+                    ? new Persister.BookmarkEntry(line, "")
+                    : new Persister.BookmarkEntry(line.substring(0, tab), line.substring(tab + 1)));
+        }
+        return entries;
+    }
+
+    // Model row to insert at: the drop line, or below the last selected row when pasting.
+    private int insertionRow(TransferSupport support) {
+        int viewRow;
+        if (support.isDrop()) {
+            viewRow = ((JTable.DropLocation) support.getDropLocation()).getRow();
+        } else {
+            int[] selected = table.getSelectedRows();
+            viewRow = selected.length == 0 ? table.getRowCount() : selected[selected.length - 1] + 1;
+        }
+        return viewRow >= table.getRowCount() ? model.getRowCount() : table.convertRowIndexToModel(viewRow);
+    }
+
+    private void selectModelRows(int firstRow, int count) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) rows[i] = firstRow + i;
+        selectModelRows(table, rows);
+    }
+
+    /** Selects the given model rows (sorted) and scrolls to the first, one interval per run of view rows. */
+    static void selectModelRows(JTable table, int[] modelRows) {
+        table.clearSelection();
+        int runStart = -1, runEnd = -1;
+        for (int row : modelRows) {
+            int viewRow = table.convertRowIndexToView(row);
+            if (viewRow == -1) continue;
+            if (runStart != -1 && viewRow == runEnd + 1) {
+                runEnd = viewRow;
+                continue;
+            }
+            if (runStart != -1) table.addRowSelectionInterval(runStart, runEnd);
+            runStart = runEnd = viewRow;
+        }
+        if (runStart != -1) table.addRowSelectionInterval(runStart, runEnd);
+        int firstView = modelRows.length == 0 ? -1 : table.convertRowIndexToView(modelRows[0]);
+        if (firstView != -1) table.scrollRectToVisible(table.getCellRect(firstView, 0, true));
+    }
+}
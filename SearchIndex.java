@@ -0,0 +1,446 @@
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableModel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index over the lowercased Name/Value cells of one tab, kept up to date from the
+ * model's TableModelEvents. A query of 3+ characters only verifies rows that contain all of
+ * its trigrams; shorter queries scan the cached lowercased strings without touching the model.
+ * The trigram postings are built on the first such query, as the lowercased strings alone are
+ * enough for scanning, filtering and sorting.
+ *
+ * Must only be used on the Event Dispatch Thread, like the model it listens to, except for
+ * {@link #snapshot()} and for building an index from a copy of the entries.
+ */
+public class SearchIndex implements TableModelListener {
+
+    // An indexed row. Its strings never change; an edited row is replaced by a new Row.
+    static final class Row {
+        final int id;
+        final String name;
+        final String value;
+        int position; // Model row index, refreshed lazily after structural changes
+
+        Row(int id, String name, String value) {
+            this.id = id;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private static final int[] NO_HITS = new int[0];
+
+    private final TableModel model;
+    private final ArrayList<Row> rows = new ArrayList<>();
+    private Row[] rowsById = new Row[1024]; // null once a row is removed or replaced
+    private int nextId;
+    private int deadIds;
+    private boolean positionsDirty;
+    private final TrigramPostings postings = new TrigramPostings();
+    private boolean postingsBuilt;
+
+    private int version;
+    private String cachedQuery;
+    private int cachedVersion = -1;
+    private int[] cachedHits;
+
+    public SearchIndex(TableModel model) {
+        this.model = model;
+        rebuild();
+        model.addTableModelListener(this);
+    }
+
+    /**
+     * Builds an index of {@code entries}, a copy of the model's entries; may be called off the EDT.
+     * The index does not follow the model until {@link #attach()} is called, on the EDT, while
+     * the model still holds exactly these entries.
+     */
+    SearchIndex(TableModel model, List<Persister.BookmarkEntry> entries) {
+        this.model = model;
+        rowsById = new Row[Math.max(1024, entries.size())];
+        if (entries instanceof PackedEntryList) {
+            PackedEntryList packed = (PackedEntryList) entries;
+            for (int r = 0; r < packed.size(); r++) rows.add(index(lower(packed.getName(r)), lower(packed.getValue(r))));
+        } else {
+            for (Persister.BookmarkEntry entry : entries) rows.add(index(lower(entry.name), lower(entry.value)));
+        }
+        positionsDirty = true;
+    }
+
+    /** Starts following the model's changes; see {@link #SearchIndex(TableModel, List)}. */
+    void attach() {
+        model.addTableModelListener(this);
+    }
+
+    /** Stops listening to the model, e.g. when the tab is closed. */
+    public void dispose() {
+        model.removeTableModelListener(this);
+    }
+
+    /**
+     * Returns every cell containing {@code query} (case-insensitive), encoded as
+     * {@code modelRow * 2 + modelColumn} and sorted ascending.
+     */
+    public int[] find(String query) {
+        String lower = query.toLowerCase();
+        if (lower.equals(cachedQuery) && cachedVersion == version) return cachedHits;
+        refreshPositions();
+
+        int[] hits;
+        if (lower.length() < 3) {
+            hits = scan(lower);
+        } else {
+            buildPostings();
+            int[] candidates = candidateIds(lower);
+            hits = new int[Math.min(2 * candidates.length, 1024)];
+            int count = 0;
+            for (int id : candidates) {
+                Row row = rowsById[id];
+                if (row == null) continue;
+                if (count + 2 > hits.length) hits = Arrays.copyOf(hits, 2 * hits.length);
+                if (row.name.contains(lower)) hits[count++] = row.position * 2;
+                if (row.value.contains(lower)) hits[count++] = row.position * 2 + 1;
+            }
+            hits = Arrays.copyOf(hits, count);
+            Arrays.sort(hits); // Ids follow edit order, not row order
+        }
+        cachedQuery = lower;
+        cachedVersion = version;
+        cachedHits = hits;
+        return hits;
+    }
+
+    /**
+     * Returns the indexed rows in model order. May be called from any thread: the copy is taken
+     * between two model events, and rows are immutable, so the array can be searched while the
+     * table keeps changing.
+     */
+    public synchronized Row[] snapshot() {
+        return rows.toArray(new Row[0]);
+    }
+
+    /** Returns the row at model position {@code modelRow}; its strings are the lowercased cells. */
+    Row rowAt(int modelRow) {
+        return rows.get(modelRow);
+    }
+
+    /** Returns the current model row of {@code row}, or -1 if it was removed or edited since. */
+    public int positionOf(Row row) {
+        if (row.id >= rowsById.length || rowsById[row.id] != row) return -1;
+        refreshPositions();
+        return row.position;
+    }
+
+    /** Returns the current text of a cell of {@code row}, or null if the row is gone. */
+    public String cellText(Row row, int column) {
+        int position = positionOf(row);
+        if (position == -1) return null;
+        Object cell = model.getValueAt(position, column);
+        return cell == null ? "" : cell.toString();
+    }
+
+    // Synchronized only against snapshot(), which is the one method used off the EDT
+    @Override
+    public synchronized void tableChanged(TableModelEvent e) {
+        version++;
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+        if (e instanceof BookmarkTableModel.RowsRemovedEvent) {
+            removeRows(((BookmarkTableModel.RowsRemovedEvent) e).getRemovedRows());
+        } else if (e instanceof BookmarkTableModel.RowsReplacedEvent) {
+            replaceRows((BookmarkTableModel.RowsReplacedEvent) e);
+        } else if (e instanceof BookmarkTableModel.RowsReorderedEvent) {
+            reorderRows(first, ((BookmarkTableModel.RowsReorderedEvent) e).getOrder());
+        } else if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            rebuild(); // Structure or all data changed
+            return;
+        } else {
+            switch (e.getType()) {
+                case TableModelEvent.INSERT: {
+                    List<Row> inserted = new ArrayList<>(last - first + 1);
+                    for (int r = first; r <= last; r++) inserted.add(index(r));
+                    rows.addAll(first, inserted);
+                    positionsDirty = true;
+                    break;
+                }
+                case TableModelEvent.DELETE: {
+                    List<Row> removed = rows.subList(first, last + 1);
+                    for (Row row : removed) kill(row);
+                    removed.clear();
+                    positionsDirty = true;
+                    break;
+                }
+                default:
+                    reindexRange(first, last);
+            }
+        }
+        if (deadIds > 1024 && deadIds > rows.size()) compact();
+    }
+
+    // --- Internals ---
+
+    // Re-reads an updated range. Rows whose text merely moved within the range (e.g. a block
+    // move) are matched by content and kept, so only really edited rows touch the postings.
+    private void reindexRange(int first, int last) {
+        Map<String, ArrayDeque<Row>> previous = new HashMap<>();
+        for (int r = first; r <= last; r++) {
+            Row row = rows.get(r);
+            previous.computeIfAbsent(row.name + '\n' + row.value, k -> new ArrayDeque<>()).add(row);
+        }
+        for (int r = first; r <= last; r++) {
+            String name = lowerCell(r, 0);
+            String value = lowerCell(r, 1);
+            ArrayDeque<Row> same = previous.get(name + '\n' + value);
+            Row row = same != null ? same.poll() : null;
+            rows.set(r, row != null ? row : index(name, value));
+        }
+        for (ArrayDeque<Row> unused : previous.values()) {
+            for (Row row : unused) kill(row);
+        }
+        positionsDirty = true;
+    }
+
+    // Applies a permutation of the rows starting at first; the text of the rows is unchanged.
+    private void reorderRows(int first, int[] order) {
+        List<Row> span = new ArrayList<>(rows.subList(first, first + order.length));
+        for (int i = 0; i < order.length; i++) {
+            rows.set(first + i, span.get(order[i]));
+        }
+        positionsDirty = true;
+    }
+
+    // Drops the rows at the given sorted positions in one pass.
+    private void removeRows(int[] removed) {
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            if (next < removed.length && removed[next] == i) {
+                kill(row);
+                next++;
+            } else {
+                rows.set(kept++, row);
+            }
+        }
+        rows.subList(kept, rows.size()).clear();
+        positionsDirty = true;
+    }
+
+    // Rebuilds the row list in one pass, keeping the Rows outside the replaced blocks.
+    private void replaceRows(BookmarkTableModel.RowsReplacedEvent e) {
+        int[] starts = e.getStarts();
+        int[] removed = e.getRemovedCounts();
+        int[] inserted = e.getInsertedCounts();
+        List<Row> result = new ArrayList<>(model.getRowCount());
+        int from = 0;
+        for (int i = 0; i < starts.length; i++) {
+            result.addAll(rows.subList(from, starts[i]));
+            for (Row row : rows.subList(starts[i], starts[i] + removed[i])) kill(row);
+            for (int j = 0; j < inserted[i]; j++) result.add(index(result.size()));
+            from = starts[i] + removed[i];
+        }
+        result.addAll(rows.subList(from, rows.size()));
+        rows.clear();
+        rows.addAll(result);
+        positionsDirty = true;
+    }
+
+    private void rebuild() {
+        rows.clear();
+        rowsById = new Row[Math.max(1024, model.getRowCount())];
+        nextId = 0;
+        deadIds = 0;
+        postings.clear();
+        postingsBuilt = false;
+        for (int r = 0; r < model.getRowCount(); r++) rows.add(index(r));
+        positionsDirty = true;
+    }
+
+    // Renumbers live rows so ids are dense again and drops the dead ids from the postings.
+    private void compact() {
+        List<Row> live = new ArrayList<>(rows);
+        rows.clear();
+        rowsById = new Row[Math.max(1024, live.size())];
+        nextId = 0;
+        deadIds = 0;
+        postings.clear();
+        for (Row row : live) rows.add(index(row.name, row.value));
+        positionsDirty = true;
+    }
+
+    private Row index(int modelRow) {
+        return index(lowerCell(modelRow, 0), lowerCell(modelRow, 1));
+    }
+
+    private Row index(String name, String value) {
+        Row row = new Row(nextId++, name, value);
+        if (row.id == rowsById.length) rowsById = Arrays.copyOf(rowsById, rowsById.length * 2);
+        rowsById[row.id] = row;
+        if (postingsBuilt) addPostings(row);
+        return row;
+    }
+
+    private void buildPostings() {
+        if (postingsBuilt) return;
+        for (int id = 0; id < nextId; id++) {
+            if (rowsById[id] != null) addPostings(rowsById[id]); // In id order, so each list stays sorted
+        }
+        postingsBuilt = true;
+    }
+
+    private void addPostings(Row row) {
+        for (long trigram : distinctTrigrams(row.name, row.value)) {
+            postings.add(trigram, row.id);
+        }
+    }
+
+    private void kill(Row row) {
+        rowsById[row.id] = null;
+        deadIds++;
+    }
+
+    private String lowerCell(int modelRow, int column) {
+        Object cell = model.getValueAt(modelRow, column);
+        return cell == null ? "" : cell.toString().toLowerCase();
+    }
+
+    private static String lower(String text) {
+        return text == null ? "" : text.toLowerCase();
+    }
+
+    private void refreshPositions() {
+        if (!positionsDirty) return;
+        for (int i = 0; i < rows.size(); i++) rows.get(i).position = i;
+        positionsDirty = false;
+    }
+
+    private int[] scan(String lower) {
+        int[] hits = new int[64];
+        int count = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            if (count + 2 > hits.length) hits = Arrays.copyOf(hits, 2 * hits.length);
+            if (row.name.contains(lower)) hits[count++] = i * 2;
+            if (row.value.contains(lower)) hits[count++] = i * 2 + 1;
+        }
+        return Arrays.copyOf(hits, count);
+    }
+
+    // Ids of rows containing every trigram of the query, intersecting the shortest lists first.
+    private int[] candidateIds(String lower) {
+        long[] trigrams = distinctTrigrams(lower, "");
+        IntList[] lists = new IntList[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings.get(trigrams[i]);
+            if (lists[i] == null) return NO_HITS;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists[0].data, lists[0].size);
+        int resultSize = result.length;
+        for (int l = 1; l < lists.length && resultSize > 0; l++) {
+            IntList other = lists[l];
+            int i = 0, j = 0, k = 0;
+            while (i < resultSize && j < other.size) {
+                int a = result[i], b = other.data[j];
+                if (a == b) { result[k++] = a; i++; j++; }
+                else if (a < b) i++;
+                else j++;
+            }
+            resultSize = k;
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    private static long[] distinctTrigrams(String a, String b) {
+        long[] trigrams = new long[Math.max(0, a.length() - 2) + Math.max(0, b.length() - 2)];
+        int count = addTrigrams(a, trigrams, 0);
+        count = addTrigrams(b, trigrams, count);
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) trigrams[distinct++] = trigrams[i];
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static int addTrigrams(String s, long[] out, int count) {
+        for (int i = 0; i + 2 < s.length(); i++) {
+            out[count++] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        return count;
+    }
+
+    // Growable int array; row ids are appended in increasing order, so each list stays sorted.
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+
+    // Open-addressing map from a packed trigram to its posting list.
+    private static final class TrigramPostings {
+        private long[] keys = new long[1024];
+        private IntList[] values = new IntList[1024];
+        private int size;
+
+        void clear() {
+            keys = new long[1024];
+            values = new IntList[1024];
+            size = 0;
+        }
+
+        IntList get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) return values[slot];
+            }
+            return null;
+        }
+
+        void add(long key, int id) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != null && keys[slot] != key) slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                keys[slot] = key;
+                values[slot] = new IntList();
+                if (++size * 2 > keys.length) {
+                    grow();
+                    add(key, id);
+                    return;
+                }
+            }
+            values[slot].add(id);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            IntList[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new IntList[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] == null) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != null) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -1,35 +1,94 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.plaf.basic.BasicButtonUI;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.undo.UndoManager;
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class WorldsEditor extends JFrame {
 
+    private static final Metrics.Timer OPEN_TIMER = Metrics.timer("editor.open");
+    private static final Metrics.Timer RELOAD_TIMER = Metrics.timer("editor.reload");
+    private static final Metrics.Timer FIRST_FRAME_TIMER = Metrics.timer("editor.firstFrame");
+    private static final String[] TOOLBAR_ICONS = {"assets/newlist.png", "assets/folder.png", "assets/new.png",
+            "assets/delete.png", "assets/up.png", "assets/down.png", "assets/save.png", "assets/find.png", "assets/library.png",
+            "assets/compare.png"};
+
     private JTabbedPane tabbedPane;
     private List<TabInfo> openTabsInfo = new ArrayList<>();
     private FindDialog findDialog;
+    private LibraryDialog libraryDialog;
+    private CompareDialog compareDialog;
+    private RecoveryJournal journal; // Null until started, or if the recovery folder cannot be used
+    // Coalesces edits into one recovery copy per tab per interval; see RecoveryJournal
+    private final Timer journalTimer = new Timer(0, e -> writeRecoveryCopies());
+    private final FileWatcher fileWatcher = createFileWatcher(); // Null if the platform cannot watch files
+    // Decodes opened files in parallel, at most one per core
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "file-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     // Clase interna actualizada para usar los nuevos nombres de Persister
     private static class TabInfo {
         File originalFile;
-        Persister.BookmarkData originalData;
         JTable table;
-        DefaultTableModel tableModel;
+        BookmarkTableModel tableModel;
         String fileType;
+        SwingWorker<?, ?> loader; // Non-null while the file is still being decoded
+        SearchIndex searchIndex; // Built on first search, sort or filter
+        BookmarkRowSorter sorter;
+        final JTextField filterField = new JTextField();
+        final UndoManager undoManager = new UndoManager();
+        int changeCount; // Model events so far, to notice edits made while a reload was merging
+        // The entries as last loaded or saved, the base for merging changes made by other programs
+        List<Persister.BookmarkEntry> diskEntries;
+        long diskLength, diskModified; // State of the file diskEntries matches
+        File watchedFile;
+        Runnable fileListener;
+        SwingWorker<?, ?> reloader; // Non-null while an outside change is being merged
+        boolean reloadPending; // The file changed again while reloader was running
+        int revealRow = -1, revealColumn; // Cell to select once the file has loaded
+        int savedChangeCount; // changeCount when the entries last matched the file
+        int journaledChangeCount; // changeCount when the recovery journal was last given a copy
+        RecoveryJournal.Slot journalSlot;
+        JLabel titleLabel;
 
-        TabInfo(File file, Persister.BookmarkData data, JTable table, String type) {
+        TabInfo(File file, JTable table, String type) {
             this.originalFile = file;
-            this.originalData = data;
             this.table = table;
-            this.tableModel = (DefaultTableModel) table.getModel();
+            this.tableModel = (BookmarkTableModel) table.getModel();
             this.fileType = type;
+            undoManager.setLimit(-1); // Unlimited; edits only hold the rows they touched
+            tableModel.addUndoableEditListener(undoManager);
+        }
+
+        boolean isModified() {
+            return changeCount != savedChangeCount;
         }
     }
 
@@ -37,7 +96,7 @@ public class WorldsEditor extends JFrame {
         setTitle("Worldmarks & Avatars list editor");
         setSize(1200, 800);
         setMinimumSize(new Dimension(800, 600));
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         setLocationRelativeTo(null);
         try {
             setIconImage(new ImageIcon(getClass().getResource("/assets/icon.ico")).getImage()); 
@@ -50,8 +109,37 @@ public class WorldsEditor extends JFrame {
 
         mainPanel.add(buttonPanel, BorderLayout.WEST);
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
+        mainPanel.setTransferHandler(createFileDropHandler());
+        tabbedPane.setTransferHandler(mainPanel.getTransferHandler());
         
         setContentPane(mainPanel);
+        journalTimer.setRepeats(false);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                onExit();
+            }
+        });
+        bindUndoKeys(getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW), getRootPane().getActionMap());
+    }
+
+    // Ctrl+Z undoes, Ctrl+Y or Ctrl+Shift+Z redoes, in the active tab.
+    private void bindUndoKeys(InputMap inputMap, ActionMap actionMap) {
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        actionMap.put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                onUndo(false);
+            }
+        });
+        actionMap.put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                onUndo(true);
+            }
+        });
     }
     
     private JPanel createButtonPanel() {
@@ -73,18 +161,15 @@ public class WorldsEditor extends JFrame {
         buttonPanel.add(createIconButton("assets/save.png", "Save File", e -> onSaveFile()));
         buttonPanel.add(Box.createRigidArea(new Dimension(0, 15)));
         buttonPanel.add(createIconButton("assets/find.png", "Find", e -> onFind()));
+        buttonPanel.add(createIconButton("assets/library.png", "Library", e -> onLibrary()));
+        buttonPanel.add(createIconButton("assets/compare.png", "Compare", e -> onCompare()));
         container.add(buttonPanel);
         return container;
     }
     
     private JButton createIconButton(String path, String tooltip, ActionListener listener) {
-        JButton button;
-        try {
-            button = new JButton(new ImageIcon(getClass().getResource(path)));
-        } catch (Exception e) {
-            System.err.println("Icono '" + path + "' no encontrado.");
-            button = new JButton(tooltip.substring(0, 1));
-        }
+        ImageIcon icon = IconCache.get(path);
+        JButton button = icon != null ? new JButton(icon) : new JButton(tooltip.substring(0, 1));
         button.setToolTipText(tooltip);
         button.addActionListener(listener);
         button.setPreferredSize(new Dimension(40, 40));
@@ -119,25 +204,542 @@ public class WorldsEditor extends JFrame {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Open File");
         fileChooser.setFileFilter(new FileNameExtensionFilter("Supported Files", "worldsmarks", "avatars"));
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        fileChooser.setMultiSelectionEnabled(true);
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
-            File selectedFile = fileChooser.getSelectedFile();
+            openFiles(Arrays.asList(fileChooser.getSelectedFiles()));
+        }
+    }
+
+    // Accepts files and folders dropped on the window.
+    private TransferHandler createFileDropHandler() {
+        return new TransferHandler() {
+            @Override
+            public boolean canImport(TransferSupport support) {
+                return support.isDataFlavorSupported(DataFlavor.javaFileListFlavor);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean importData(TransferSupport support) {
+                if (!canImport(support)) return false;
+                try {
+                    openFiles((List<File>) support.getTransferable().getTransferData(DataFlavor.javaFileListFlavor));
+                    return true;
+                } catch (UnsupportedFlavorException | IOException e) {
+                    return false;
+                }
+            }
+        };
+    }
+
+    // Opens every selected file, and every .worldsmarks/.avatars file under selected folders.
+    private void openFiles(List<File> selection) {
+        List<File> roots = new ArrayList<>(selection);
+        loadExecutor.execute(() -> {
+            List<File> files = new ArrayList<>();
+            List<String> failures = new ArrayList<>();
+            for (File root : roots) {
+                if (!root.isDirectory()) {
+                    files.add(root);
+                    continue;
+                }
+                try (Stream<Path> paths = Files.walk(root.toPath())) {
+                    paths.filter(Files::isRegularFile)
+                         .filter(path -> isBookmarkFile(path.getFileName().toString()))
+                         .sorted()
+                         .forEach(path -> files.add(path.toFile()));
+                } catch (IOException | UncheckedIOException e) {
+                    failures.add(root.getName() + ": " + e.getMessage());
+                }
+            }
+            SwingUtilities.invokeLater(() -> {
+                OpenBatch batch = new OpenBatch(files.size(), failures);
+                for (File file : files) {
+                    openFileInBackground(file, batch);
+                }
+                batch.reportIfComplete();
+            });
+        });
+    }
+
+    private static boolean isBookmarkFile(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".worldsmarks") || lower.endsWith(".avatars");
+    }
+
+    // Files opened together; failures are collected and reported in one dialog once all are done.
+    private class OpenBatch {
+        private int pending;
+        private final List<String> failures;
+
+        OpenBatch(int pending, List<String> failures) {
+            this.pending = pending;
+            this.failures = failures;
+        }
+
+        void finished(File file, Throwable error) {
+            if (error != null) failures.add(file.getName() + ": " + error.getMessage());
+            pending--;
+            reportIfComplete();
+        }
+
+        void reportIfComplete() {
+            if (pending > 0 || failures.isEmpty()) return;
+            String message = failures.size() == 1
+                    ? "Could not read the file:\n" + failures.get(0)
+                    : "Could not read " + failures.size() + " files:\n" + String.join("\n", failures);
+            failures.clear();
+            JOptionPane.showMessageDialog(WorldsEditor.this, message, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Opens a tab right away and fills it from a background worker, batch by batch.
+    private TabInfo openFileInBackground(File file, OpenBatch batch) {
+        String fileType = file.getName().toLowerCase().endsWith(".avatars") ? ".avatars" : ".worldsmarks";
+        PackedEntryList entries = new PackedEntryList(16, (int) Math.min(file.length(), 1 << 30), true);
+        Persister.BookmarkData data = new Persister.BookmarkData(null, 0, entries);
+        TabInfo tab = addNewTab(file.getName(), file, data, fileType);
+        tab.table.setEnabled(false);
+
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Loading " + file.getName() + "...");
+        JButton cancelButton = new JButton("Cancel");
+        JPanel statusPanel = new JPanel(new BorderLayout(5, 0));
+        statusPanel.setBorder(new EmptyBorder(4, 4, 4, 4));
+        statusPanel.add(progressBar, BorderLayout.CENTER);
+        statusPanel.add(cancelButton, BorderLayout.EAST);
+
+        int tabIndex = openTabsInfo.indexOf(tab);
+        JPanel content = new JPanel(new BorderLayout());
+        content.add(statusPanel, BorderLayout.NORTH);
+        content.add(tabbedPane.getComponentAt(tabIndex), BorderLayout.CENTER);
+        tabbedPane.setComponentAt(tabIndex, content);
+
+        LoadWorker worker = new LoadWorker(file, tab, content, statusPanel, batch);
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) progressBar.setValue((Integer) e.getNewValue());
+        });
+        cancelButton.addActionListener(e -> worker.cancel(true));
+        tab.loader = worker;
+        loadExecutor.execute(worker);
+        return tab;
+    }
+
+    /**
+     * Decodes a file off the EDT into small packed batches (bytes only, no Strings), which are
+     * appended to the tab's table as they arrive. Progress is bytes read over file length.
+     */
+    private class LoadWorker extends SwingWorker<BookmarkReader, PackedEntryList> {
+        private static final int BATCH_SIZE = 4096;
+
+        private final File file;
+        private final TabInfo tab;
+        private final JPanel content;
+        private final JPanel statusPanel;
+        private final OpenBatch batch;
+        private final long started = System.nanoTime();
+
+        LoadWorker(File file, TabInfo tab, JPanel content, JPanel statusPanel, OpenBatch batch) {
+            this.file = file;
+            this.tab = tab;
+            this.content = content;
+            this.statusPanel = statusPanel;
+            this.batch = batch;
+        }
+
+        @Override
+        protected BookmarkReader doInBackground() throws IOException {
+            try (BookmarkReader reader = Persister.openReader(file)) {
+                long length = Math.max(1, reader.getFileLength());
+                PackedEntryList batch = new PackedEntryList(BATCH_SIZE, false);
+                while (!isCancelled() && reader.readEntryInto(batch)) {
+                    if (batch.size() == BATCH_SIZE) {
+                        publish(batch);
+                        batch = new PackedEntryList(BATCH_SIZE, false);
+                        setProgress((int) Math.min(100, reader.getPosition() * 100 / length));
+                    }
+                }
+                if (!batch.isEmpty()) publish(batch);
+                return reader; // Closed, but its header values are still needed in done()
+            }
+        }
+
+        @Override
+        protected void process(List<PackedEntryList> batches) {
+            if (isCancelled()) return;
+            for (PackedEntryList batch : batches) {
+                tab.tableModel.appendRows(batch);
+            }
+        }
+
+        @Override
+        protected void done() {
+            tab.loader = null;
+            int tabIndex = openTabsInfo.indexOf(tab);
+            if (tabIndex == -1 || isCancelled()) {
+                if (tabIndex != -1) closeTab(tabIndex);
+                batch.finished(file, null); // Closed or cancelled while loading
+                return;
+            }
             try {
-                Persister.BookmarkData data = Persister.loadFromFile(selectedFile);
-                String fileType = selectedFile.getName().toLowerCase().endsWith(".avatars") ? ".avatars" : ".worldsmarks";
-                addNewTab(selectedFile.getName(), selectedFile, data, fileType);
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "Could not read the file:\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                BookmarkReader header = get();
+                Persister.BookmarkData data = tab.tableModel.getData();
+                data.type = header.getType();
+                data.version = header.getVersion();
+                data.extraInt = header.getExtraInt();
+                data.objectID = header.getObjectID();
+                data.hasHeaderMetadata = true;
+                data.bindSource(file, header.getFileLength(), header.getLastModified(), header.getObjectID());
+                ((PackedEntryList) data.entries).trimToSize();
+                trackDiskState(tab);
+                content.remove(statusPanel);
+                content.revalidate();
+                tab.table.setEnabled(true);
+                if (tab.revealRow != -1) revealModelRow(tab, tab.revealRow, tab.revealColumn);
+                OPEN_TIMER.record(started, header.getFileLength(), data.entries.size());
+                batch.finished(file, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                closeTab(tabIndex);
+                batch.finished(file, e.getCause() != null ? e.getCause() : e);
             }
         }
     }
-    
-    private void addNewTab(String title, File file, Persister.BookmarkData data, String fileType) {
-        DefaultTableModel model = new DefaultTableModel(new Object[]{"Name", "Value"}, 0);
-        for (Persister.BookmarkEntry entry : data.entries) {
-            model.addRow(new Object[]{entry.name.trim(), entry.value.trim()});
+
+    private void closeTab(int index) {
+        tabbedPane.remove(index);
+        TabInfo closed = openTabsInfo.remove(index);
+        if (closed.loader != null) closed.loader.cancel(true);
+        if (closed.reloader != null) closed.reloader.cancel(true);
+        if (closed.searchIndex != null) closed.searchIndex.dispose();
+        stopWatching(closed);
+        forgetRecoveryCopy(closed);
+    }
+
+    // Asks whether to save a modified tab before it is closed; false if the user cancelled.
+    private boolean confirmClose(TabInfo tab) {
+        if (tab.loader != null || !tab.isModified()) return true;
+        int tabIndex = openTabsInfo.indexOf(tab);
+        tabbedPane.setSelectedIndex(tabIndex);
+        int choice = JOptionPane.showConfirmDialog(this, "Save changes to " + getTabTitle(tabIndex) + " before closing?",
+                "Unsaved Changes", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (choice == JOptionPane.YES_OPTION) return saveTab(tab);
+        return choice == JOptionPane.NO_OPTION;
+    }
+
+    private void onExit() {
+        for (TabInfo tab : new ArrayList<>(openTabsInfo)) {
+            if (!confirmClose(tab)) return;
+        }
+        if (journal != null) journal.close(); // Nothing left to recover
+        System.exit(0);
+    }
+
+    // Shows a "*" before the title of a tab with unsaved changes.
+    private void updateTabTitle(TabInfo tab) {
+        int tabIndex = openTabsInfo.indexOf(tab);
+        if (tabIndex == -1) return;
+        String title = getTabTitle(tabIndex);
+        tab.titleLabel.setText(tab.isModified() ? "*" + title : title);
+    }
+
+    // --- Crash Recovery ---
+
+    // Counts the tab's edits, marks it modified and schedules a recovery copy of it.
+    private void onTabChanged(TabInfo tab) {
+        tab.changeCount++;
+        if (tab.loader != null) return; // Rows still arriving from the file
+        updateTabTitle(tab);
+        if (journal != null && !journalTimer.isRunning()) {
+            journalTimer.setInitialDelay((int) journal.getWriteInterval());
+            journalTimer.start();
+        }
+    }
+
+    // Hands the journal a snapshot of each tab edited since its last copy; the journal writes it
+    // in the background.
+    private void writeRecoveryCopies() {
+        if (journal == null) return;
+        for (TabInfo tab : openTabsInfo) {
+            if (tab.loader != null || !tab.isModified() || tab.journaledChangeCount == tab.changeCount) continue;
+            if (tab.journalSlot == null) tab.journalSlot = journal.newSlot();
+            Persister.BookmarkData data = tab.tableModel.getData();
+            journal.write(tab.journalSlot, tab.originalFile, tab.fileType, data.withEntries(snapshotOf(data.entries)));
+            tab.journaledChangeCount = tab.changeCount;
+        }
+    }
+
+    private void forgetRecoveryCopy(TabInfo tab) {
+        if (tab.journalSlot != null) journal.remove(tab.journalSlot);
+        tab.journalSlot = null;
+        tab.journaledChangeCount = tab.changeCount;
+    }
+
+    // Starts this session's journal, then offers to restore the tabs of a session that did not exit cleanly.
+    private void startRecovery() {
+        new SwingWorker<RecoveryJournal.Abandoned, Void>() {
+            private RecoveryJournal started;
+
+            @Override
+            protected RecoveryJournal.Abandoned doInBackground() {
+                File root = RecoveryJournal.defaultFolder();
+                try {
+                    started = new RecoveryJournal(root);
+                } catch (IOException e) {
+                    System.err.println("Unsaved changes cannot be kept for recovery: " + e);
+                }
+                return RecoveryJournal.findAbandoned(root);
+            }
+
+            @Override
+            protected void done() {
+                journal = started;
+                if (journal != null) writeRecoveryCopies(); // Tabs edited while it started
+                try {
+                    offerRestore(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println("Cannot look for unsaved changes to recover: " + e.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    private void offerRestore(RecoveryJournal.Abandoned abandoned) {
+        if (abandoned.tabs.isEmpty()) return;
+        StringBuilder list = new StringBuilder();
+        for (RecoveryJournal.Recovered tab : abandoned.tabs) {
+            list.append("\n  ").append(tab.originalFile != null ? tab.originalFile.getPath() : "Untitled" + tab.fileType)
+                    .append(String.format(" (%,d entries)", tab.data.entries.size()));
+        }
+        Object[] options = {"Restore", "Discard", "Not Now"};
+        int choice = JOptionPane.showOptionDialog(this,
+                "The editor did not close normally last time. Unsaved changes were kept for:" + list + "\nRestore them?",
+                "Recover Unsaved Changes", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        if (choice == JOptionPane.YES_OPTION) {
+            for (RecoveryJournal.Recovered recovered : abandoned.tabs) {
+                String title = recovered.originalFile != null ? recovered.originalFile.getName() : "Untitled" + recovered.fileType;
+                TabInfo tab = addNewTab(title, recovered.originalFile, recovered.data, recovered.fileType);
+                tab.savedChangeCount = -1; // Differs from the file until saved
+                tab.journaledChangeCount = -1;
+                updateTabTitle(tab);
+            }
+            writeRecoveryCopies();
+            if (journal != null) {
+                journal.discardAfterWrites(abandoned); // Once the restored tabs are copied into this session
+            } else {
+                abandoned.discard();
+            }
+        } else if (choice == JOptionPane.NO_OPTION) {
+            abandoned.discard();
+        } else {
+            abandoned.release();
+        }
+    }
+
+    // --- Live Reload ---
+
+    private static FileWatcher createFileWatcher() {
+        try {
+            return new FileWatcher();
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Files cannot be watched for outside changes: " + e);
+            return null;
+        }
+    }
+
+    // Records the tab's entries as the file's content, e.g. after loading or saving, and watches the file.
+    private void trackDiskState(TabInfo tab) {
+        tab.savedChangeCount = tab.changeCount;
+        updateTabTitle(tab);
+        forgetRecoveryCopy(tab);
+        Persister.BookmarkData data = tab.tableModel.getData();
+        tab.diskEntries = snapshotOf(data.entries);
+        tab.diskLength = data.sourceLength;
+        tab.diskModified = data.sourceModified;
+        if (fileWatcher == null || tab.originalFile.equals(tab.watchedFile)) return;
+        stopWatching(tab);
+        tab.fileListener = () -> onFileChangedOnDisk(tab);
+        try {
+            fileWatcher.watch(tab.originalFile, tab.fileListener);
+            tab.watchedFile = tab.originalFile;
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + tab.originalFile + ": " + e);
         }
+    }
+
+    private void stopWatching(TabInfo tab) {
+        if (tab.watchedFile == null) return;
+        fileWatcher.unwatch(tab.watchedFile, tab.fileListener);
+        tab.watchedFile = null;
+    }
+
+    // A packed list shares its strings with the copy; other lists only copy references, as entries are never changed in place.
+    private static List<Persister.BookmarkEntry> snapshotOf(List<Persister.BookmarkEntry> entries) {
+        return entries instanceof PackedEntryList ? ((PackedEntryList) entries).snapshot() : new ArrayList<>(entries);
+    }
+
+    private void onFileChangedOnDisk(TabInfo tab) {
+        if (!openTabsInfo.contains(tab) || tab.loader != null || tab.diskEntries == null) return;
+        if (tab.reloader != null) {
+            tab.reloadPending = true;
+            return;
+        }
+        File file = tab.watchedFile;
+        if (file == null || !file.isFile()) return;
+        if (file.length() == tab.diskLength && file.lastModified() == tab.diskModified) return; // Our own save
+        ReloadWorker worker = new ReloadWorker(tab, file);
+        tab.reloader = worker;
+        loadExecutor.execute(worker);
+    }
+
+    /**
+     * Reads a tab's file after another program changed it and merges the changes into the tab
+     * without reloading it: the file is decoded into packed bytes, diffed against the entries as
+     * last loaded or saved and against the tab's current entries, and only the rows that differ
+     * are decoded and applied, as a few update/insert/delete events. Changes that overlap unsaved
+     * edits in the tab are not applied but reported.
+     */
+    private class ReloadWorker extends SwingWorker<List<List<Persister.BookmarkEntry>>, Void> {
+        private final TabInfo tab;
+        private final File file;
+        private final List<Persister.BookmarkEntry> base;
+        private final List<Persister.BookmarkEntry> local;
+        private final int changeCount;
+        private final long started = System.nanoTime();
+        private Persister.BookmarkData remote;
+        private EntryDiff.Rebase rebase;
+
+        ReloadWorker(TabInfo tab, File file) {
+            this.tab = tab;
+            this.file = file;
+            this.base = tab.diskEntries;
+            this.local = snapshotOf(tab.tableModel.getEntries());
+            this.changeCount = tab.changeCount;
+        }
+
+        @Override
+        protected List<List<Persister.BookmarkEntry>> doInBackground() throws IOException {
+            remote = Persister.loadFromFilePacked(file);
+            rebase = EntryDiff.rebase(base, local, remote.entries);
+            PackedEntryList entries = (PackedEntryList) remote.entries;
+            List<List<Persister.BookmarkEntry>> replacements = new ArrayList<>(rebase.applicable.size());
+            for (EntryDiff.Hunk hunk : rebase.applicable) {
+                List<Persister.BookmarkEntry> rows = new ArrayList<>(hunk.newCount);
+                for (int i = hunk.newStart; i < hunk.newEnd(); i++) {
+                    rows.add(new Persister.BookmarkEntry(entries.getName(i), entries.getValue(i)));
+                }
+                replacements.add(rows);
+            }
+            return replacements;
+        }
+
+        @Override
+        protected void done() {
+            tab.reloader = null;
+            if (isCancelled() || !openTabsInfo.contains(tab)) return;
+            List<List<Persister.BookmarkEntry>> replacements;
+            try {
+                replacements = get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Most likely caught mid-write; the writer's last event brings us back
+                System.err.println("Cannot reload " + file + ": " + e.getCause());
+                return;
+            }
+            if (tab.table.isEditing()) tab.table.getCellEditor().stopCellEditing();
+            if (tab.changeCount != changeCount || tab.loader != null) {
+                onFileChangedOnDisk(tab); // Edited meanwhile; merge again against the new state
+                return;
+            }
+
+            // Apply from the bottom up so the row numbers of the remaining hunks stay valid
+            boolean wasModified = tab.isModified();
+            BookmarkTableModel model = tab.tableModel;
+            model.beginUpdate();
+            try {
+                for (int i = rebase.applicable.size() - 1; i >= 0; i--) {
+                    EntryDiff.Hunk hunk = rebase.applicable.get(i);
+                    model.replaceRows(hunk.oldStart, hunk.oldCount, replacements.get(i));
+                }
+            } finally {
+                model.endUpdate();
+            }
+            Persister.BookmarkData data = model.getData();
+            data.type = remote.type;
+            data.version = remote.version;
+            data.extraInt = remote.extraInt;
+            data.objectID = remote.objectID;
+            tab.diskEntries = remote.entries;
+            tab.diskLength = remote.sourceLength;
+            tab.diskModified = remote.sourceModified;
+            if (!wasModified) {
+                // The tab matched the old file, so now it matches the new one
+                tab.savedChangeCount = tab.changeCount;
+                updateTabTitle(tab);
+                forgetRecoveryCopy(tab);
+            }
+
+            RELOAD_TIMER.record(started, remote.sourceLength, replacements.size());
+            if (!rebase.conflicts.isEmpty()) reportConflicts();
+            if (tab.reloadPending) {
+                tab.reloadPending = false;
+                onFileChangedOnDisk(tab);
+            }
+        }
+
+        private void reportConflicts() {
+            StringBuilder rows = new StringBuilder();
+            int shown = 0;
+            for (EntryDiff.Hunk conflict : rebase.conflicts) {
+                if (shown++ == 10) {
+                    rows.append("\n  ...");
+                    break;
+                }
+                // Rows here moved by the changes applied above them
+                int here = conflict.oldStart;
+                for (EntryDiff.Hunk hunk : rebase.applicable) {
+                    if (hunk.oldStart < conflict.oldStart) here += hunk.newCount - hunk.oldCount;
+                }
+                rows.append("\n  ").append(rowRange(here, conflict.oldCount)).append(" here, ")
+                        .append(rowRange(conflict.newStart, conflict.newCount)).append(" in the file");
+            }
+            JOptionPane.showMessageDialog(WorldsEditor.this,
+                    file.getName() + " was changed by another program. " + rebase.applicable.size() + " change(s) were merged into the tab.\n"
+                            + rebase.conflicts.size() + " change(s) overlap your unsaved edits and were not applied; your version was kept:" + rows,
+                    "File Changed", JOptionPane.WARNING_MESSAGE);
+        }
+
+        private String rowRange(int start, int count) {
+            if (count == 0) return "before row " + (start + 1);
+            return count == 1 ? "row " + (start + 1) : "rows " + (start + 1) + "-" + (start + count);
+        }
+    }
+    
+    private TabInfo addNewTab(String title, File file, Persister.BookmarkData data, String fileType) {
+        BookmarkTableModel model = new BookmarkTableModel(data);
         JTable table = new JTable(model);
+        TabInfo tab = new TabInfo(file, table, fileType);
+        model.addTableModelListener(e -> onTabChanged(tab));
+        tab.sorter = new BookmarkRowSorter(model, () -> searchIndexOf(tab));
+        table.setRowSorter(tab.sorter);
+        BookmarkCellRenderer renderer = new BookmarkCellRenderer();
+        table.setDefaultRenderer(Object.class, renderer);
+        table.setDefaultRenderer(String.class, renderer);
+        table.setRowHeight(BookmarkCellRenderer.rowHeight(table));
+        table.setFillsViewportHeight(true);
+        table.setDragEnabled(true);
+        table.setDropMode(DropMode.INSERT_ROWS);
+        table.setTransferHandler(new RowTransferHandler(table, model, tabbedPane.getTransferHandler()));
+        // Bound on the table too, so the keys never reach it as typing that starts a cell edit
+        bindUndoKeys(table.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT), table.getActionMap());
         
         table.setBackground(new Color(45, 45, 45));
         table.setForeground(Color.WHITE);
@@ -147,14 +749,18 @@ public class WorldsEditor extends JFrame {
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.getViewport().setBackground(new Color(45, 45, 45));
         scrollPane.setBorder(null);
+        JPanel tabContent = new JPanel(new BorderLayout());
+        tabContent.add(createFilterBar(tab), BorderLayout.NORTH);
+        tabContent.add(scrollPane, BorderLayout.CENTER);
 
         int tabIndex = tabbedPane.getTabCount();
-        tabbedPane.addTab(title, scrollPane);
+        tabbedPane.addTab(title, tabContent);
 
         JPanel tabComponent = new JPanel(new BorderLayout(5, 0));
         tabComponent.setOpaque(false);
         JLabel titleLabel = new JLabel(title);
         titleLabel.setForeground(Color.WHITE);
+        tab.titleLabel = titleLabel;
         JButton closeButton = new JButton("x");
         closeButton.setUI(new BasicButtonUI());
         closeButton.setContentAreaFilled(false);
@@ -165,9 +771,8 @@ public class WorldsEditor extends JFrame {
         closeButton.setPreferredSize(new Dimension(18, 18));
         closeButton.addActionListener(e -> {
             int i = tabbedPane.indexOfTabComponent(tabComponent);
-            if (i != -1) {
-                tabbedPane.remove(i);
-                openTabsInfo.remove(i);
+            if (i != -1 && confirmClose(openTabsInfo.get(i))) {
+                closeTab(i);
             }
         });
         
@@ -175,44 +780,109 @@ public class WorldsEditor extends JFrame {
         tabComponent.add(closeButton, BorderLayout.EAST);
         tabbedPane.setTabComponentAt(tabIndex, tabComponent);
         
-        openTabsInfo.add(new TabInfo(file, data, table, fileType));
+        openTabsInfo.add(tab);
         tabbedPane.setSelectedIndex(tabIndex);
+        return tab;
+    }
+
+    // A box above the table that shows only the rows containing its text; Escape clears it.
+    private JPanel createFilterBar(TabInfo tab) {
+        JTextField field = tab.filterField;
+        JLabel label = new JLabel("Filter:");
+        label.setForeground(Color.WHITE);
+        JLabel count = new JLabel();
+        count.setForeground(Color.LIGHT_GRAY);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { tab.sorter.setFilterText(field.getText()); }
+            public void removeUpdate(DocumentEvent e) { tab.sorter.setFilterText(field.getText()); }
+            public void changedUpdate(DocumentEvent e) { }
+        });
+        field.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "clearFilter");
+        field.getActionMap().put("clearFilter", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                field.setText("");
+            }
+        });
+        // Rows shown out of all rows, while filtering
+        tab.sorter.addRowSorterListener(e -> count.setText(tab.sorter.getFilterText().isEmpty() ? ""
+                : String.format("%,d of %,d rows", tab.table.getRowCount(), tab.tableModel.getRowCount())));
+
+        JPanel bar = new JPanel(new BorderLayout(5, 0));
+        bar.setBackground(new Color(45, 45, 45));
+        bar.setBorder(new EmptyBorder(4, 4, 4, 4));
+        bar.add(label, BorderLayout.WEST);
+        bar.add(field, BorderLayout.CENTER);
+        bar.add(count, BorderLayout.EAST);
+        return bar;
     }
 
     private void onAddRow() {
         TabInfo currentTab = getActiveTabInfo();
-        if (currentTab == null) return;
-        int insertPos = currentTab.table.getSelectedRow() + 1;
-        if (insertPos == 0) insertPos = currentTab.tableModel.getRowCount();
+        if (currentTab == null || currentTab.loader != null) return;
+        int selectedRow = currentTab.table.getSelectedRow();
+        int insertPos = selectedRow == -1 ? currentTab.tableModel.getRowCount() : currentTab.table.convertRowIndexToModel(selectedRow) + 1;
         if (currentTab.fileType.equals(".avatars")) {
-            currentTab.tableModel.insertRow(insertPos, new Object[]{"New avatar", "avatar:body.code.rwg"});
+            currentTab.tableModel.insertRows(insertPos, Collections.singletonList(new Persister.BookmarkEntry("New avatar", "avatar:body.code.rwg")));
         } else {
-            currentTab.tableModel.insertRow(insertPos, new Object[]{"New entry", "home:new/new.world"});
+            currentTab.tableModel.insertRows(insertPos, Collections.singletonList(new Persister.BookmarkEntry("New entry", "home:new/new.world")));
         }
+        // A new row the filter would hide is shown by clearing the filter
+        if (currentTab.table.convertRowIndexToView(insertPos) == -1) currentTab.filterField.setText("");
     }
     
     private void onDeleteRow() {
         TabInfo currentTab = getActiveTabInfo();
-        if (currentTab == null) return;
+        if (currentTab == null || currentTab.loader != null) return;
         int[] selectedRows = currentTab.table.getSelectedRows();
         if (selectedRows.length == 0) return;
         int result = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete " + selectedRows.length + " row(s)?", "Confirm", JOptionPane.YES_NO_OPTION);
         if (result == JOptionPane.YES_OPTION) {
-            for (int i = selectedRows.length - 1; i >= 0; i--) {
-                currentTab.tableModel.removeRow(selectedRows[i]);
-            }
+            if (currentTab.table.isEditing()) currentTab.table.getCellEditor().cancelCellEditing();
+            currentTab.tableModel.removeRows(toModelRows(currentTab.table, selectedRows));
+            currentTab.table.clearSelection();
         }
     }
     
+    // Moves every selected row one position up or down, as one block per contiguous run.
     private void onMoveRow(int direction) {
         TabInfo currentTab = getActiveTabInfo();
-        if (currentTab == null) return;
-        int row = currentTab.table.getSelectedRow();
-        if (row == -1) return;
-        int targetRow = row + direction;
-        if (targetRow >= 0 && targetRow < currentTab.tableModel.getRowCount()) {
-            currentTab.tableModel.moveRow(row, row, targetRow);
-            currentTab.table.setRowSelectionInterval(targetRow, targetRow);
+        if (currentTab == null || currentTab.loader != null) return;
+        JTable table = currentTab.table;
+        int[] selectedRows = table.getSelectedRows();
+        if (selectedRows.length == 0) return;
+        if (!currentTab.sorter.getSortKeys().isEmpty()) {
+            // Rows keep their sorted places, so a move would not show
+            Toolkit.getDefaultToolkit().beep();
+            return;
+        }
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+        int[] movedRows = currentTab.tableModel.shiftRows(toModelRows(table, selectedRows), direction);
+        if (movedRows == null) return;
+        RowTransferHandler.selectModelRows(table, movedRows);
+    }
+
+    private static int[] toModelRows(JTable table, int[] viewRows) {
+        int[] modelRows = new int[viewRows.length];
+        for (int i = 0; i < viewRows.length; i++) {
+            modelRows[i] = table.convertRowIndexToModel(viewRows[i]);
+        }
+        return modelRows;
+    }
+
+    private void onUndo(boolean redo) {
+        TabInfo currentTab = getActiveTabInfo();
+        if (currentTab == null || currentTab.loader != null) return;
+        if (currentTab.table.isEditing()) {
+            // First undo only discards the edit in progress
+            currentTab.table.getCellEditor().cancelCellEditing();
+            return;
+        }
+        UndoManager undoManager = currentTab.undoManager;
+        if (redo ? undoManager.canRedo() : undoManager.canUndo()) {
+            if (redo) undoManager.redo(); else undoManager.undo();
+        } else {
+            Toolkit.getDefaultToolkit().beep();
         }
     }
 
@@ -227,6 +897,25 @@ public class WorldsEditor extends JFrame {
         findDialog.setVisible(true);
         findDialog.requestFocusInWindow();
     }
+
+    private void onLibrary() {
+        if (libraryDialog == null) {
+            libraryDialog = new LibraryDialog(this);
+        }
+        libraryDialog.setVisible(true);
+    }
+
+    private void onCompare() {
+        int selectedIndex = tabbedPane.getSelectedIndex();
+        if (selectedIndex == -1) {
+            JOptionPane.showMessageDialog(this, "Please open a file first.", "No Active Tab", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        if (compareDialog == null) {
+            compareDialog = new CompareDialog(this);
+        }
+        compareDialog.showFor(selectedIndex);
+    }
     
     private void onSaveFile() {
         TabInfo currentTab = getActiveTabInfo();
@@ -234,6 +923,15 @@ public class WorldsEditor extends JFrame {
             JOptionPane.showMessageDialog(this, "There is no open tab to save.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
+        saveTab(currentTab);
+    }
+
+    // Asks where to save the tab and saves it; false if it was not saved.
+    private boolean saveTab(TabInfo currentTab) {
+        if (currentTab.loader != null) {
+            JOptionPane.showMessageDialog(this, "The file is still loading.", "Error", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
         if (currentTab.table.isEditing()) {
             currentTab.table.getCellEditor().stopCellEditing();
         }
@@ -247,28 +945,21 @@ public class WorldsEditor extends JFrame {
         if (result == JFileChooser.APPROVE_OPTION) {
             File saveFile = fileChooser.getSelectedFile();
             
-            List<Persister.BookmarkEntry> currentEntries = new ArrayList<>();
-            for (int i = 0; i < currentTab.tableModel.getRowCount(); i++) {
-                String name = (String) currentTab.tableModel.getValueAt(i, 0);
-                String value = (String) currentTab.tableModel.getValueAt(i, 1);
-                currentEntries.add(new Persister.BookmarkEntry(name, value));
-            }
-            Persister.BookmarkData saveData = new Persister.BookmarkData(
-                currentTab.originalData.type,
-                currentTab.originalData.version,
-                currentEntries
-            );
-            
+            // The table edits the loaded entry list in place, so it can be saved as-is
+            Persister.BookmarkData saveData = currentTab.tableModel.getData();
+
             try {
                 Persister.saveToFile(saveFile, saveData, currentTab.originalFile);
                 currentTab.originalFile = saveFile;
-                currentTab.originalData = saveData;
+                trackDiskState(currentTab);
                 
                 JOptionPane.showMessageDialog(this, "File saved successfully at:\n" + saveFile.getAbsolutePath(), "Success", JOptionPane.INFORMATION_MESSAGE);
+                return true;
             } catch (IOException e) {
                 JOptionPane.showMessageDialog(this, "Could not save the file:\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         }
+        return false;
     }
     
     public JTable getActiveTable() {
@@ -276,6 +967,148 @@ public class WorldsEditor extends JFrame {
         return (info != null) ? info.table : null;
     }
     
+    public SearchIndex getActiveSearchIndex() {
+        int selectedIndex = tabbedPane.getSelectedIndex();
+        return selectedIndex == -1 ? null : getSearchIndex(selectedIndex);
+    }
+
+    public int getTabCount() {
+        return openTabsInfo.size();
+    }
+
+    public String getTabTitle(int tabIndex) {
+        return tabbedPane.getTitleAt(tabIndex);
+    }
+
+    public JTable getTable(int tabIndex) {
+        return openTabsInfo.get(tabIndex).table;
+    }
+
+    /** Returns whether the tab's file is still being read, so its table does not hold every entry yet. */
+    public boolean isTabLoading(int tabIndex) {
+        return openTabsInfo.get(tabIndex).loader != null;
+    }
+
+    public SearchIndex getSearchIndex(int tabIndex) {
+        return searchIndexOf(openTabsInfo.get(tabIndex));
+    }
+
+    private static SearchIndex searchIndexOf(TabInfo info) {
+        if (info.searchIndex == null) {
+            info.searchIndex = new SearchIndex(info.tableModel);
+        }
+        return info.searchIndex;
+    }
+
+    /** Returns the tab's search index, or null if no search, sort or filter has needed it yet. */
+    public SearchIndex getBuiltSearchIndex(int tabIndex) {
+        return openTabsInfo.get(tabIndex).searchIndex;
+    }
+
+    /**
+     * Returns a task that builds the tab's search index on the thread that runs it, without
+     * blocking the EDT, and returns it. The task returns null if the tab is closed first.
+     * Call this on the EDT; it copies the tab's entries for the task to index.
+     */
+    public Callable<SearchIndex> searchIndexBuilder(int tabIndex) {
+        return new SearchIndexBuild(openTabsInfo.get(tabIndex));
+    }
+
+    // Indexes a copy of a tab's entries off the EDT, then installs the index on the EDT. If the
+    // tab changed in between, the copy no longer matches it, so it takes a new one and starts over.
+    private class SearchIndexBuild implements Callable<SearchIndex> {
+        private final TabInfo tab;
+        // Set on the EDT; invokeAndWait makes them visible to call()
+        private List<Persister.BookmarkEntry> entries;
+        private int changeCount;
+        private boolean finished;
+        private SearchIndex result;
+
+        SearchIndexBuild(TabInfo tab) {
+            this.tab = tab;
+            copyEntries();
+        }
+
+        @Override
+        public SearchIndex call() throws InterruptedException, InvocationTargetException {
+            while (true) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                SearchIndex built = new SearchIndex(tab.tableModel, entries);
+                SwingUtilities.invokeAndWait(() -> install(built));
+                if (finished) return result;
+            }
+        }
+
+        private void install(SearchIndex built) {
+            if (!openTabsInfo.contains(tab)) {
+                finished = true;
+            } else if (tab.searchIndex != null) {
+                finished = true; // Built meanwhile for a sort, filter or Find Next
+                result = tab.searchIndex;
+            } else if (tab.changeCount == changeCount) {
+                built.attach();
+                tab.searchIndex = built;
+                finished = true;
+                result = built;
+            } else {
+                copyEntries();
+            }
+        }
+
+        private void copyEntries() {
+            entries = snapshotOf(tab.tableModel.getEntries());
+            changeCount = tab.changeCount;
+        }
+    }
+
+    // Selects the tab owning 'index' and the cell that 'row' is currently displayed at.
+    public void revealCell(SearchIndex index, SearchIndex.Row row, int column) {
+        for (TabInfo info : openTabsInfo) {
+            if (info.searchIndex != index) continue;
+            int modelRow = index.positionOf(row);
+            if (modelRow != -1) revealModelRow(info, modelRow, column);
+            return;
+        }
+    }
+
+    /**
+     * Selects a cell of a file, in its tab if the file is open, or in a new tab once it has loaded.
+     * @param file The file, as an absolute path.
+     * @param modelRow The entry's position in the file.
+     * @param column 0 for the name, 1 for the value.
+     */
+    public void openEntry(File file, int modelRow, int column) {
+        for (TabInfo info : openTabsInfo) {
+            if (info.originalFile == null || !info.originalFile.getAbsoluteFile().equals(file)) continue;
+            if (info.loader != null) {
+                tabbedPane.setSelectedIndex(openTabsInfo.indexOf(info));
+                info.revealRow = modelRow;
+                info.revealColumn = column;
+            } else {
+                revealModelRow(info, modelRow, column);
+            }
+            return;
+        }
+        TabInfo tab = openFileInBackground(file, new OpenBatch(1, new ArrayList<>()));
+        tab.revealRow = modelRow;
+        tab.revealColumn = column;
+    }
+
+    private void revealModelRow(TabInfo info, int modelRow, int column) {
+        tabbedPane.setSelectedIndex(openTabsInfo.indexOf(info));
+        if (modelRow >= info.tableModel.getRowCount()) return; // The file has fewer rows than when it was indexed
+        int viewRow = info.table.convertRowIndexToView(modelRow);
+        if (viewRow == -1) {
+            // Hidden by the tab's filter
+            info.filterField.setText("");
+            viewRow = info.table.convertRowIndexToView(modelRow);
+        }
+        int viewColumn = info.table.convertColumnIndexToView(column);
+        if (viewRow == -1) return;
+        info.table.changeSelection(viewRow, viewColumn, false, false);
+        info.table.scrollRectToVisible(info.table.getCellRect(viewRow, viewColumn, true));
+    }
+
     private TabInfo getActiveTabInfo() {
         int selectedIndex = tabbedPane.getSelectedIndex();
         if (selectedIndex == -1) return null;
@@ -283,6 +1116,8 @@ public class WorldsEditor extends JFrame {
     }
     
     public static void main(String[] args) {
+        // Decoded while the look and feel is set up
+        IconCache.preload(TOOLBAR_ICONS);
         try {
             UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
             UIManager.put("control", new Color(45, 45, 45));
@@ -295,6 +1130,23 @@ public class WorldsEditor extends JFrame {
         } catch (Exception e) {
             e.printStackTrace();
         }
-        SwingUtilities.invokeLater(() -> new WorldsEditor().setVisible(true));
+        EdtWatchdog.start();
+        SwingUtilities.invokeLater(() -> {
+            WorldsEditor editor = new WorldsEditor();
+            editor.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    // Time since the JVM started, including its own startup
+                    long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+                    FIRST_FRAME_TIMER.recordNanos(TimeUnit.MILLISECONDS.toNanos(uptime), 0, 0);
+                    // Publishing over JMX starts the platform MBean server, which takes a while
+                    Thread thread = new Thread(Metrics::registerMBean, "metrics-register");
+                    thread.setDaemon(true);
+                    thread.start();
+                    editor.startRecovery();
+                }
+            });
+            editor.setVisible(true);
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+import benchmarks.EditorBridge;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Default-package side of {@link EditorBridge}; it can reach the editor's classes, including the
+ * package-private ChannelReader and ChannelWriter.
+ */
+public class EditorBridgeImpl implements EditorBridge {
+
+    @Override
+    public Object loadFromFile(File file) throws IOException {
+        return Persister.loadFromFile(file);
+    }
+
+    @Override
+    public Object loadFromFileChannel(File file) throws IOException {
+        return Persister.loadFromFileChannel(file);
+    }
+
+    @Override
+    public Object loadFromFilePacked(File file) throws IOException {
+        return Persister.loadFromFilePacked(file);
+    }
+
+    @Override
+    public void saveToFile(File destination, Object data) throws IOException {
+        Persister.saveToFile(destination, (Persister.BookmarkData) data, null);
+    }
+
+    @Override
+    public void saveToFileEncoded(File destination, Object data) throws IOException {
+        Persister.BookmarkData source = (Persister.BookmarkData) data;
+        Persister.BookmarkData detached = new Persister.BookmarkData(source.type, source.version, source.entries);
+        detached.extraInt = source.extraInt;
+        detached.objectID = source.objectID;
+        Persister.saveToFile(destination, detached, null);
+    }
+
+    @Override
+    public int entryCount(Object data) {
+        return ((Persister.BookmarkData) data).entries.size();
+    }
+
+    @Override
+    public long readStrings(File file, int count) throws IOException {
+        long total = 0;
+        try (ChannelReader reader = new ChannelReader(FileChannel.open(file.toPath(), StandardOpenOption.READ))) {
+            for (int i = 0; i < count; i++) {
+                total += reader.readString().length();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void writeStrings(File file, String[] strings) throws IOException {
+        try (ChannelWriter writer = new ChannelWriter(FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            for (String s : strings) {
+                writer.writeString(s);
+            }
+        }
+    }
+
+    @Override
+    public Object populateTab(Object data) {
+        BookmarkTableModel model = new BookmarkTableModel((Persister.BookmarkData) data);
+        JTable table = new JTable(model);
+        return new Object[]{table, new SearchIndex(model)};
+    }
+
+    @Override
+    public Object populateDefaultTableModel(Object data) {
+        DefaultTableModel model = new DefaultTableModel(new Object[]{"Name", "Value"}, 0);
+        for (Persister.BookmarkEntry entry : ((Persister.BookmarkData) data).entries) {
+            model.addRow(new Object[]{entry.name, entry.value});
+        }
+        return new JTable(model);
+    }
+
+    @Override
+    public Object newTableModel(Object data) {
+        return new BookmarkTableModel((Persister.BookmarkData) data);
+    }
+
+    @Override
+    public Object newSearchIndex(Object tableModel) {
+        return new SearchIndex((TableModel) tableModel);
+    }
+
+    @Override
+    public int[] find(Object searchIndex, String query) {
+        return ((SearchIndex) searchIndex).find(query);
+    }
+
+    @Override
+    public int scanTableModel(Object tableModel, String query) {
+        TableModel model = (TableModel) tableModel;
+        String lower = query.toLowerCase();
+        int hits = 0;
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int column = 0; column < model.getColumnCount(); column++) {
+                Object cell = model.getValueAt(row, column);
+                if (cell != null && cell.toString().toLowerCase().contains(lower)) hits++;
+            }
+        }
+        return hits;
+    }
+}
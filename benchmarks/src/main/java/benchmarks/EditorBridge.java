@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The editor's classes live in the default package, which a named package cannot import, and
+ * JMH refuses benchmarks in the default package. Benchmarks therefore call the editor through
+ * this interface, implemented by the default-package class EditorBridgeImpl. There is only one
+ * implementation, so the JIT inlines the calls and they add no measurable cost.
+ *
+ * Editor objects (BookmarkData, table models, indexes) are passed around as Object.
+ */
+public interface EditorBridge {
+
+    static EditorBridge load() {
+        try {
+            return (EditorBridge) Class.forName("EditorBridgeImpl").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("EditorBridgeImpl is missing from the classpath", e);
+        }
+    }
+
+    // --- Persister ---
+
+    Object loadFromFile(File file) throws IOException;
+
+    Object loadFromFileChannel(File file) throws IOException;
+
+    Object loadFromFilePacked(File file) throws IOException;
+
+    void saveToFile(File destination, Object data) throws IOException;
+
+    /** Saves the entries as data built in memory, so nothing can be copied from a source file. */
+    void saveToFileEncoded(File destination, Object data) throws IOException;
+
+    int entryCount(Object data);
+
+    // --- String micro-paths ---
+
+    /** Reads {@code count} flagged strings with ChannelReader, returning their total length. */
+    long readStrings(File file, int count) throws IOException;
+
+    /** Writes the strings as flagged strings with ChannelWriter. */
+    void writeStrings(File file, String[] strings) throws IOException;
+
+    // --- Tables and search ---
+
+    /** Builds what addNewTab builds for a tab: the table model, the JTable and the search index. */
+    Object populateTab(Object data);
+
+    /** Copies the entries into a DefaultTableModel row by row, as addNewTab did before BookmarkTableModel. */
+    Object populateDefaultTableModel(Object data);
+
+    Object newTableModel(Object data);
+
+    Object newSearchIndex(Object tableModel);
+
+    /** Runs a FindDialog query against a SearchIndex. */
+    int[] find(Object searchIndex, String query);
+
+    /** Counts matching cells the way FindDialog did before SearchIndex: lowercasing every cell. */
+    int scanTableModel(Object tableModel, String query);
+}
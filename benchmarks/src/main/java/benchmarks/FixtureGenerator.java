@@ -0,0 +1,137 @@
+package benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Writes synthetic .worldsmarks and .avatars files. It encodes the Persister format itself,
+ * independently of the code being measured, and is deterministic for a given seed.
+ *
+ * Usage: java -cp benchmarks.jar benchmarks.FixtureGenerator <file> <entries> [worldsmarks|avatars] [seed]
+ */
+public final class FixtureGenerator {
+
+    public static final String WORLDSMARKS_TYPE = "NET.worlds.console.BookmarkMenuItem";
+    public static final String AVATARS_TYPE = "NET.worlds.console.AvatarMenuItem";
+
+    private static final String[] WORDS = {
+            "Lobby", "Plaza", "Gallery", "Hangout", "Castle", "Island", "Museum", "Arena", "Garden",
+            "Library", "Stage", "Beach", "Tower", "Cavern", "Harbor", "Temple", "Market", "Studio",
+            "Cyber", "Retro", "Neon", "Moon", "Dream", "Pixel", "Ocean", "Crystal", "Shadow", "Sky"
+    };
+    private static final String[] ACCENTED = {"Café", "Übergang", "Señal", "Château", "東京", "Ωmega"};
+    private static final String[] HOSTS = {"home", "worlds.net", "3dcd.com", "galaxy.worlds.com", "wrlds.org"};
+    private static final String[] BODY_PARTS = {"body", "head", "hair", "torso", "legs"};
+
+    private FixtureGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: FixtureGenerator <file> <entries> [worldsmarks|avatars] [seed]");
+            System.exit(2);
+        }
+        boolean avatars = args.length > 2 && args[2].equals("avatars");
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        String[][] entries = entries(Integer.parseInt(args[1]), avatars, seed);
+        write(new File(args[0]), avatars ? AVATARS_TYPE : WORLDSMARKS_TYPE, entries);
+    }
+
+    /**
+     * Returns a cached fixture in the temp directory, generating it on first use so that
+     * forks and repeated runs share it.
+     */
+    public static File fixture(int entries, boolean avatars) throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "worlds-editor-fixtures");
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File file = new File(dir, "fixture-" + entries + (avatars ? ".avatars" : ".worldsmarks"));
+        if (!file.isFile()) {
+            File temp = new File(dir, file.getName() + "." + System.nanoTime() + ".tmp");
+            write(temp, avatars ? AVATARS_TYPE : WORLDSMARKS_TYPE, entries(entries, avatars, 42));
+            if (!temp.renameTo(file) && !file.isFile()) throw new IOException("Cannot create " + file);
+            temp.delete();
+        }
+        return file;
+    }
+
+    /** Returns {name, value} pairs with realistic lengths: names of 5-40 chars, values of 20-100. */
+    public static String[][] entries(int count, boolean avatars, long seed) {
+        Random random = new Random(seed);
+        String[][] entries = new String[count][];
+        for (int i = 0; i < count; i++) {
+            String name = name(random, i);
+            String value = avatars ? avatarValue(random) : worldValue(random, name);
+            entries[i] = new String[]{name, value};
+        }
+        return entries;
+    }
+
+    /** Writes a file the way Persister.saveToFile does, with the default header metadata. */
+    public static void write(File file, String type, String[][] entries) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            writeString(out, "PERSISTER Worlds, Inc.");
+            out.writeInt(7);   // Version
+            out.writeInt(entries.length);
+            out.writeInt(459); // Extra
+            out.writeInt(8782); // Object ID
+            writeString(out, type);
+            for (int i = 0; i < entries.length; i++) {
+                if (i == 0) {
+                    out.writeInt(1);
+                } else {
+                    out.writeInt(460 + i);
+                    out.writeInt(8782);
+                }
+                writeString(out, entries[i][0]);
+                writeString(out, entries[i][1]);
+            }
+            writeString(out, "END PERSISTER");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s.isEmpty());
+        if (!s.isEmpty()) out.writeUTF(s);
+    }
+
+    private static String name(Random random, int index) {
+        StringBuilder name = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) name.append(' ');
+            // About 3% of the names contain non-ASCII text
+            name.append(random.nextInt(100) < 3 ? pick(random, ACCENTED) : pick(random, WORDS));
+        }
+        if (random.nextBoolean()) name.append(" #").append(index % 1000);
+        return name.toString();
+    }
+
+    private static String worldValue(Random random, String name) {
+        String host = pick(random, HOSTS);
+        StringBuilder path = new StringBuilder(host.equals("home") ? "home:" : "http://" + host + "/worlds/");
+        path.append(pick(random, WORDS).toLowerCase()).append('/');
+        for (int i = 0, n = 1 + random.nextInt(3); i < n; i++) {
+            path.append(pick(random, WORDS).toLowerCase()).append(random.nextInt(100)).append('/');
+        }
+        path.append(name.replaceAll("[^A-Za-z0-9]", "").toLowerCase()).append(".world");
+        if (random.nextInt(4) == 0) path.append("#spawn").append(random.nextInt(10));
+        return path.toString();
+    }
+
+    private static String avatarValue(Random random) {
+        StringBuilder value = new StringBuilder("avatar:");
+        for (int i = 0, n = 1 + random.nextInt(4); i < n; i++) {
+            if (i > 0) value.append('.');
+            value.append(pick(random, BODY_PARTS)).append(random.nextInt(50));
+        }
+        return value.append(".rwg").toString();
+    }
+
+    private static String pick(Random random, String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading and saving whole files. "encode" saves data that has no source file and is fully
+ * re-encoded; "splice" saves unchanged data loaded with loadFromFileChannel, which copies records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Djava.awt.headless=true"})
+public class PersisterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"worldsmarks"})
+    public String kind;
+
+    private final EditorBridge editor = EditorBridge.load();
+    private File fixture;
+    private File output;
+    private Object encodeData;
+    private Object spliceData;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = FixtureGenerator.fixture(entries, kind.equals("avatars"));
+        output = File.createTempFile("persister-bench", "." + kind);
+        encodeData = editor.loadFromFile(fixture);
+        spliceData = editor.loadFromFileChannel(fixture);
+    }
+
+    @TearDown
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    public Object loadFromFile() throws IOException {
+        return editor.loadFromFile(fixture);
+    }
+
+    @Benchmark
+    public Object loadFromFileChannel() throws IOException {
+        return editor.loadFromFileChannel(fixture);
+    }
+
+    @Benchmark
+    public Object loadFromFilePacked() throws IOException {
+        return editor.loadFromFilePacked(fixture);
+    }
+
+    @Benchmark
+    public void saveToFileEncode() throws IOException {
+        editor.saveToFileEncoded(output, encodeData);
+    }
+
+    @Benchmark
+    public void saveToFileSplice() throws IOException {
+        // Each save rebinds the data to the file it wrote, so the next one splices from there
+        editor.saveToFile(output, spliceData);
+    }
+}
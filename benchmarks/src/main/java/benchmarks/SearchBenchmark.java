@@ -0,0 +1,61 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FindDialog-style queries over a populated table model. Queries rotate so the index's
+ * last-query cache never answers, and mix selective, common, short and missing terms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Djava.awt.headless=true"})
+public class SearchBenchmark {
+
+    private static final String[] QUERIES = {"castle", "café", "home:", "#12", "ar", "spawn7", "neon pixel", "no such world"};
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    private final EditorBridge editor = EditorBridge.load();
+    private Object tableModel;
+    private Object searchIndex;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Object data = editor.loadFromFileChannel(FixtureGenerator.fixture(entries, false));
+        tableModel = editor.newTableModel(data);
+        searchIndex = editor.newSearchIndex(tableModel);
+    }
+
+    private String nextQuery() {
+        next = (next + 1) % QUERIES.length;
+        return QUERIES[next];
+    }
+
+    @Benchmark
+    public int[] findWithIndex() {
+        return editor.find(searchIndex, nextQuery());
+    }
+
+    @Benchmark
+    public int findByScanningModel() {
+        return editor.scanTableModel(tableModel, nextQuery());
+    }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The flagged-string read/write paths, per string. The "stream" variants are the
+ * DataInputStream/DataOutputStream code Persister.readString and the original save used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringCodecBenchmark {
+
+    private static final int STRINGS = 20000;
+
+    private final EditorBridge editor = EditorBridge.load();
+    private String[] strings;
+    private File input;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[][] entries = FixtureGenerator.entries(STRINGS / 2, false, 42);
+        strings = new String[STRINGS];
+        for (int i = 0; i < entries.length; i++) {
+            strings[2 * i] = entries[i][0];
+            strings[2 * i + 1] = entries[i][1];
+        }
+        input = File.createTempFile("strings-bench", ".bin");
+        output = File.createTempFile("strings-bench-out", ".bin");
+        editor.writeStrings(input, strings);
+    }
+
+    @TearDown
+    public void tearDown() {
+        input.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public long readStringChannel() throws IOException {
+        return editor.readStrings(input, STRINGS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public long readStringStream() throws IOException {
+        long total = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input)))) {
+            for (int i = 0; i < STRINGS; i++) {
+                total += (in.readBoolean() ? "" : in.readUTF()).length();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public void writeStringChannel() throws IOException {
+        editor.writeStrings(output, strings);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STRINGS)
+    public void writeStringStream() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            for (String s : strings) {
+                out.writeBoolean(s.isEmpty());
+                if (!s.isEmpty()) out.writeUTF(s);
+            }
+        }
+    }
+}
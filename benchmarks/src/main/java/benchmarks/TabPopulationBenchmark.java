@@ -0,0 +1,50 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The model-population part of addNewTab, without a window: BookmarkTableModel, JTable and
+ * SearchIndex, against the DefaultTableModel row-by-row copy the editor used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Djava.awt.headless=true"})
+public class TabPopulationBenchmark {
+
+    @Param({"1000", "100000"})
+    public int entries;
+
+    private final EditorBridge editor = EditorBridge.load();
+    private Object data;
+
+    @Setup
+    public void setUp() throws IOException {
+        data = editor.loadFromFileChannel(FixtureGenerator.fixture(entries, false));
+    }
+
+    @Benchmark
+    public Object addNewTab() {
+        return editor.populateTab(data);
+    }
+
+    @Benchmark
+    public Object addNewTabDefaultTableModel() {
+        return editor.populateDefaultTableModel(data);
+    }
+}
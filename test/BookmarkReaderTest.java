@@ -0,0 +1,72 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BookmarkReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsEmptyFile() throws IOException {
+        try (BookmarkReader reader = new BookmarkReader(createFile(0))) {
+            assertEquals(0, reader.getEntryCount());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    // A damaged tail must be reported whether or not the file has entries.
+    @Test
+    public void rejectsMissingFooter() throws IOException {
+        for (int count = 0; count < 2; count++) {
+            File file = createFile(count);
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(out.length() - 1);
+            }
+            assertRejected(file);
+        }
+    }
+
+    @Test
+    public void rejectsWrongFooter() throws IOException {
+        for (int count = 0; count < 2; count++) {
+            File file = createFile(count);
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.seek(out.length() - 1);
+                out.write('X'); // "END PERSISTEX"
+            }
+            assertRejected(file);
+        }
+    }
+
+    private static void assertRejected(File file) {
+        try (BookmarkReader reader = new BookmarkReader(file)) {
+            while (reader.readEntry() != null) {
+                // Read to the end
+            }
+            fail("Accepted a damaged footer in " + file.getName());
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private File createFile(int count) throws IOException {
+        List<Persister.BookmarkEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new Persister.BookmarkEntry("name" + i, "home:world" + i + ".world"));
+        }
+        File file = folder.newFile("test" + count + ".worldsmarks");
+        Persister.saveToFile(file, new Persister.BookmarkData("NET.worlds.console.BookmarkMenuItem", 7, entries), null);
+        return file;
+    }
+}
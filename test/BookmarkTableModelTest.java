@@ -0,0 +1,127 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.undo.UndoManager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BookmarkTableModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Undo after a save puts back entries whose records were in the file as it was before the
+    // save; the next save must encode them rather than splice bytes from the new file.
+    @Test
+    public void undoAfterSaveWritesUndoneEntries() throws IOException {
+        File file = createFile(20);
+        checkSaveUndoSave(file, Persister.loadFromFilePacked(file));
+    }
+
+    @Test
+    public void undoAfterSaveWritesUndoneEntriesUnpacked() throws IOException {
+        File file = createFile(20);
+        checkSaveUndoSave(file, Persister.loadFromFileChannel(file));
+    }
+
+    @Test
+    public void undoAfterSaveWritesRemovedEntries() throws IOException {
+        File file = createFile(20);
+        BookmarkTableModel model = new BookmarkTableModel(Persister.loadFromFilePacked(file));
+        UndoManager undo = new UndoManager();
+        model.addUndoableEditListener(undo);
+
+        model.removeRows(new int[] {2, 5, 6});
+        Persister.saveToFile(file, model.getData(), file);
+        undo.undo();
+        model.setValueAt("x", 15, 1);
+        Persister.saveToFile(file, model.getData(), file);
+
+        assertFileHolds(file, model);
+    }
+
+    // Redo after a save must not put back an entry the save bound to its record in place.
+    @Test
+    public void redoAfterSaveWritesRedoneEntries() throws IOException {
+        File file = createFile(20);
+        checkSaveUndoRedo(file, Persister.loadFromFilePacked(file));
+    }
+
+    // A new list keeps its entries in an ArrayList, which saving binds object by object.
+    @Test
+    public void redoAfterSaveWritesRedoneEntriesOfNewList() throws IOException {
+        List<Persister.BookmarkEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(new Persister.BookmarkEntry("name" + i, "home:world" + i + ".world"));
+        }
+        Persister.BookmarkData data = new Persister.BookmarkData("NET.worlds.console.BookmarkMenuItem", 7, entries);
+        File file = folder.newFile("new.worldsmarks");
+        Persister.saveToFile(file, data, null);
+        checkSaveUndoRedo(file, data);
+    }
+
+    private void checkSaveUndoRedo(File file, Persister.BookmarkData data) throws IOException {
+        BookmarkTableModel model = new BookmarkTableModel(data);
+        UndoManager undo = new UndoManager();
+        model.addUndoableEditListener(undo);
+
+        model.setValueAt("a much longer replacement name", 3, 0);
+        model.removeRows(new int[] {7, 9});
+        saveAndCheck(file, model);
+        for (int round = 0; round < 2; round++) {
+            undo.undo();
+            undo.undo();
+            saveAndCheck(file, model);
+            undo.redo();
+            undo.redo();
+            saveAndCheck(file, model);
+        }
+        assertEquals("a much longer replacement name", model.getValueAt(3, 0));
+    }
+
+    private static void saveAndCheck(File file, BookmarkTableModel model) throws IOException {
+        Persister.saveToFile(file, model.getData(), file);
+        assertFileHolds(file, model);
+    }
+
+    private void checkSaveUndoSave(File file, Persister.BookmarkData data) throws IOException {
+        BookmarkTableModel model = new BookmarkTableModel(data);
+        UndoManager undo = new UndoManager();
+        model.addUndoableEditListener(undo);
+
+        model.setValueAt("x", 3, 0);
+        model.setValueAt("x", 10, 0);
+        Persister.saveToFile(file, model.getData(), file);
+        undo.undo();
+        undo.undo();
+        Persister.saveToFile(file, model.getData(), file);
+
+        assertEquals("name10", model.getValueAt(10, 0));
+        assertFileHolds(file, model);
+    }
+
+    private File createFile(int count) throws IOException {
+        List<Persister.BookmarkEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new Persister.BookmarkEntry("name" + i, "home:world" + i + ".world"));
+        }
+        File file = folder.newFile("test.worldsmarks");
+        Persister.saveToFile(file, new Persister.BookmarkData("NET.worlds.console.BookmarkMenuItem", 7, entries), null);
+        return file;
+    }
+
+    private static void assertFileHolds(File file, BookmarkTableModel model) throws IOException {
+        List<Persister.BookmarkEntry> saved = Persister.loadFromFile(file).entries;
+        assertEquals(model.getRowCount(), saved.size());
+        for (int i = 0; i < saved.size(); i++) {
+            assertEquals("name of row " + i, model.getValueAt(i, 0), saved.get(i).name);
+            assertEquals("value of row " + i, model.getValueAt(i, 1), saved.get(i).value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SearchIndexTest {
+
+    // An index built off the EDT from a copy of the entries must match one built from the model,
+    // and keep matching it once attached.
+    @Test
+    public void indexBuiltFromCopyFollowsModelOnceAttached() {
+        PackedEntryList entries = new PackedEntryList(16, 1024, false);
+        for (int i = 0; i < 50; i++) {
+            entries.add(new Persister.BookmarkEntry("World " + i, "home:Place" + (i % 7) + ".world"));
+        }
+        BookmarkTableModel model = new BookmarkTableModel(new Persister.BookmarkData("NET.worlds.console.BookmarkMenuItem", 7, entries));
+        SearchIndex copied = new SearchIndex(model, entries.snapshot());
+        copied.attach();
+        SearchIndex reference = new SearchIndex(model);
+        assertSameHits(reference, copied);
+
+        model.setValueAt("Another place3", 10, 0);
+        model.removeRows(new int[] {1, 4, 5});
+        List<Persister.BookmarkEntry> inserted = new ArrayList<>();
+        inserted.add(new Persister.BookmarkEntry("New world", "home:place3.world"));
+        model.insertRows(0, inserted);
+        assertSameHits(reference, copied);
+    }
+
+    private static void assertSameHits(SearchIndex expected, SearchIndex actual) {
+        for (String query : new String[] {"world", "place3", "wo", "1", "another"}) {
+            assertArrayEquals(query, expected.find(query), actual.find(query));
+        }
+        assertEquals(expected.snapshot().length, actual.snapshot().length);
+    }
+}